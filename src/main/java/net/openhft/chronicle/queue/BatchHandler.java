@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.wire.Wire;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Handles each excerpt read by {@link ExcerptTailer#readBatch(int, BatchHandler)}.
+ */
+@FunctionalInterface
+public interface BatchHandler {
+
+    /**
+     * Invoked for each data excerpt in a batch, on the thread reading it.
+     * <p>
+     * The wire is limited to the excerpt and is only valid during the call.
+     *
+     * @param wire  to read the excerpt from
+     * @param index of the excerpt
+     * @return true to continue the batch, or false to end it after this excerpt
+     */
+    boolean onExcerpt(@NotNull Wire wire, long index);
+}
@@ -32,6 +32,7 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 /**
@@ -456,6 +457,71 @@ public interface ChronicleQueue extends Closeable {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Returns a future which completes with the {@link #lastIndexMSynced()} once it reaches {@code index}, i.e. once
+     * the excerpt at {@code index} is durable.
+     * <p>
+     * Only msyncs made through this queue instance complete the future, and it completes exceptionally if the queue
+     * is closed first.
+     *
+     * @param index to wait for
+     * @return a future for when the index has been msync-ed to disk
+     * @see #lastIndexMSynced(long)
+     */
+    @NotNull
+    default CompletableFuture<Long> whenMSynced(long index) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Adds a listener called each time {@link #lastIndexMSynced(long)} is called on this queue instance.
+     *
+     * @param listener to add
+     */
+    default void addMSyncListener(@NotNull MSyncListener listener) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Removes a listener added with {@link #addMSyncListener(MSyncListener)}.
+     *
+     * @param listener to remove
+     */
+    default void removeMSyncListener(@NotNull MSyncListener listener) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the index of the latest excerpt with {@code key}, according to the {@link KeyExtractor} the queue was
+     * built with.
+     * <p>
+     * Keys are looked up in an index kept beside each cycle file. Excerpts not indexed yet are scanned, so the result
+     * includes everything appended so far.
+     *
+     * @param key to look up
+     * @return the index of the latest excerpt with the key, or -1 if there is none
+     * @throws UnsupportedOperationException if the queue doesn't index keys
+     */
+    default long indexForKey(long key) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns a stream of the excerpts from {@code fromIndex} inclusive to {@code toIndex} exclusive, decoded in index
+     * order. It ends early at the last excerpt appended by the time it gets there.
+     * <p>
+     * The stream splits its range by cycle, and within large cycles, so a parallel stream reads the queue with one tailer
+     * per part. The tailers of parts which aren't read to the end, e.g. after {@code findFirst} or {@code limit}, are
+     * closed when the stream is closed, or else with the queue, so use the stream in a try-with-resources block if it
+     * may end early.
+     *
+     * @param decoder decodes each excerpt, on the thread reading it
+     * @throws UnsupportedOperationException if the queue can't be streamed
+     */
+    default <T> Stream<T> stream(long fromIndex, long toIndex, @NotNull ExcerptDecoder<T> decoder) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Refreshes this ChronicleQueue's view of the directory used for storing files.
      * <p>
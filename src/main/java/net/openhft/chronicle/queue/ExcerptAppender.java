@@ -147,4 +147,25 @@ public interface ExcerptAppender extends ExcerptCommon<ExcerptAppender>, Marshal
      * Can also be used on any appender, but this is not currently done automatically
      */
     default void normaliseEOFs() {}
+
+    /**
+     * Acquires the write lock once and returns a batch through which up to {@code maxMessages} excerpts
+     * can be written back to back.
+     * <p>
+     * This amortises the cost of locking, cycle checks and write position updates across the batch,
+     * at the expense of blocking other appenders until the batch is closed.
+     * <p>
+     * While the batch is open, {@link #writingDocument()} on this appender, including via method writers,
+     * writes to the batch.
+     *
+     * @param maxMessages the maximum number of excerpts which can be written in the batch
+     * @return a batch which must be closed to publish its excerpts and release the write lock
+     * @throws IllegalArgumentException      if {@code maxMessages} is not positive
+     * @throws IllegalStateException         if a document or batch is already open on this appender
+     * @throws UnsupportedOperationException if this appender does not support batches
+     */
+    @NotNull
+    default ExcerptBatch writingBatch(int maxMessages) {
+        throw new UnsupportedOperationException("Batches are not supported by " + getClass().getSimpleName());
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.core.annotation.SingleThreaded;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A number of excerpts appended back to back under a single acquisition of the queue's write lock.
+ * <p>
+ * Each excerpt is written via {@link #writingDocument()} and is readable by tailers as soon as its
+ * {@link DocumentContext} is closed. The write position and last sequence number of the cycle are
+ * only published once, when the batch is closed, which is also when the write lock is released.
+ * <p>
+ * All excerpts in a batch are written to the cycle which was current when the batch was started.
+ * <p><b>NOTE:</b> A batch holds the write lock for its whole lifetime, so other appenders are blocked until it is
+ * closed. Always close it, ideally with try-with-resources.
+ *
+ * @see ExcerptAppender#writingBatch(int)
+ */
+@SingleThreaded
+public interface ExcerptBatch extends AutoCloseable {
+
+    /**
+     * Starts the next excerpt in this batch.
+     *
+     * @return the context to write the excerpt to, which must be closed before the next excerpt is started
+     * @throws IllegalStateException if the batch is closed, full or the previous excerpt has not been closed
+     */
+    @NotNull
+    default DocumentContext writingDocument() {
+        return writingDocument(false);
+    }
+
+    /**
+     * Starts the next excerpt in this batch.
+     *
+     * @param metaData if the excerpt is meta data
+     * @return the context to write the excerpt to, which must be closed before the next excerpt is started
+     * @throws IllegalStateException if the batch is closed, full or the previous excerpt has not been closed
+     */
+    @NotNull
+    DocumentContext writingDocument(boolean metaData);
+
+    /**
+     * @return the maximum number of excerpts which can be started in this batch
+     */
+    int maxMessages();
+
+    /**
+     * @return the number of excerpts started in this batch so far
+     */
+    int count();
+
+    /**
+     * @return the number of excerpts which can still be started in this batch
+     */
+    default int remaining() {
+        return maxMessages() - count();
+    }
+
+    /**
+     * Publishes the write position and last sequence number of the batch and releases the write lock.
+     * Any excerpt which is still open is rolled back. Calling this more than once has no effect.
+     */
+    @Override
+    void close();
+}
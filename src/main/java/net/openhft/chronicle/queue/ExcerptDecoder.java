@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.wire.Wire;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decodes excerpts read by {@link ChronicleQueue#stream(long, long, ExcerptDecoder)} or replayed in parallel by
+ * {@link net.openhft.chronicle.queue.impl.single.SingleChronicleQueue#replay(long, long, int, boolean, ExcerptDecoder, java.util.function.ObjLongConsumer)}.
+ *
+ * @param <T> the type excerpts are decoded to
+ */
+@FunctionalInterface
+public interface ExcerptDecoder<T> {
+
+    /**
+     * Invoked for each data excerpt read, on any of the threads reading the queue, so it must be thread-safe.
+     * <p>
+     * The wire is limited to the excerpt and is only valid during the call.
+     *
+     * @param wire  to read the excerpt from
+     * @param index of the excerpt
+     * @return the decoded excerpt
+     */
+    T decode(@NotNull Wire wire, long index);
+}
@@ -17,6 +17,9 @@
  */
 package net.openhft.chronicle.queue;
 
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.PointerBytesStore;
+import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.annotation.SingleThreaded;
 import net.openhft.chronicle.core.io.IORuntimeException;
 import net.openhft.chronicle.wire.DocumentContext;
@@ -25,6 +28,10 @@ import net.openhft.chronicle.wire.ReadMarshallable;
 import net.openhft.chronicle.wire.SourceContext;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ObjLongConsumer;
+
 /**
  * The component that facilitates sequentially reading data from a {@link ChronicleQueue}.
  *
@@ -63,6 +70,108 @@ public interface ExcerptTailer extends ExcerptCommon<ExcerptTailer>, Marshallabl
     @NotNull
     DocumentContext readingDocument(boolean includeMetaData);
 
+    /**
+     * Reads the next data excerpt without a {@link DocumentContext}, pointing {@code slice} at its bytes where they are
+     * mapped rather than copying them.
+     * <p>
+     * The slice is only valid while this tailer remains in the same cycle and must not be written to.
+     *
+     * @param slice to point at the bytes of the excerpt
+     * @return true if an excerpt was read, otherwise false and the slice is unchanged
+     */
+    default boolean readBytesSlice(@NotNull PointerBytesStore slice) {
+        try (DocumentContext dc = readingDocument()) {
+            if (!dc.isPresent())
+                return false;
+            final Bytes<?> bytes = dc.wire().bytes();
+            slice.set(bytes.addressForRead(bytes.readPosition()), bytes.readRemaining());
+            return true;
+        }
+    }
+
+    /**
+     * Passes the bytes of each data excerpt available to {@code consumer} with its index, without a
+     * {@link DocumentContext} for each, until there are no more or {@code maxExcerpts} have been read.
+     * <p>
+     * The bytes are those of the queue, limited to the excerpt, and are only valid during the call.
+     *
+     * @param maxExcerpts the most excerpts to read
+     * @param consumer    to pass the bytes and index of each excerpt to
+     * @return the number of excerpts read
+     */
+    default int forEachExcerpt(int maxExcerpts, @NotNull ObjLongConsumer<Bytes<?>> consumer) {
+        int count = 0;
+        while (count < maxExcerpts) {
+            try (DocumentContext dc = readingDocument()) {
+                if (!dc.isPresent())
+                    break;
+                consumer.accept(dc.wire().bytes(), dc.index());
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads up to {@code maxExcerpts} data excerpts, passing each to {@code handler}, as a batch without a
+     * {@link DocumentContext} for each.
+     * <p>
+     * A batch ends at an excerpt which is not complete yet, at the end of a cycle, after {@code maxExcerpts} or when the
+     * handler returns false. Only its first excerpt may be in a different cycle to the last excerpt read.
+     *
+     * @param maxExcerpts the most excerpts to read
+     * @param handler     to pass each excerpt to
+     * @return the number of excerpts read
+     */
+    default int readBatch(int maxExcerpts, @NotNull BatchHandler handler) {
+        int count = 0;
+        while (count < maxExcerpts) {
+            try (DocumentContext dc = readingDocument()) {
+                if (!dc.isPresent())
+                    break;
+                count++;
+                if (!handler.onExcerpt(dc.wire(), dc.index()))
+                    break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the {@link DocumentContext} for the next excerpt, waiting up to {@code timeout} for one to be appended.
+     * <p>
+     * While waiting, this spins, then yields, then parks for progressively longer between polls. A
+     * {@link net.openhft.chronicle.queue.impl.single.SingleChronicleQueue} tailer is also woken as soon as an appender
+     * in the same process commits.
+     *
+     * @param timeout the longest to wait
+     * @param unit    of the timeout
+     * @return the document context, which is not present if nothing was appended in time
+     */
+    @NotNull
+    default DocumentContext readingDocument(long timeout, @NotNull TimeUnit unit) {
+        final long start = System.nanoTime();
+        final long timeoutNS = unit.toNanos(timeout);
+        long parkNS = 10_000;
+        DocumentContext dc = readingDocument();
+        while (!dc.isPresent()) {
+            final long waited = System.nanoTime() - start;
+            if (waited >= timeoutNS)
+                break;
+            dc.close();
+            if (waited < 20_000) {
+                Jvm.nanoPause();
+            } else if (waited < 100_000) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(Math.min(timeoutNS - waited, parkNS));
+                parkNS = Math.min(parkNS * 2, 1_000_000);
+            }
+            dc = readingDocument();
+        }
+        return dc;
+    }
+
     /**
      * Returns the current index of this Tailer.
      * <p>
@@ -118,6 +227,21 @@ public interface ExcerptTailer extends ExcerptCommon<ExcerptTailer>, Marshallabl
      */
     boolean moveToCycle(int cycle);
 
+    /**
+     * Moves this tailer to the last excerpt written before {@code epochNanos} according to the queue's time index, so reading
+     * forward replays everything written from that time on.
+     * <p>
+     * The time index only holds the time of every index spacing'th excerpt, so up to that many excerpts written before the
+     * time may be read as well.
+     *
+     * @param epochNanos the time to move to, in nanoseconds since the epoch
+     * @return false if nothing in the time index was written before the time, in which case this moves to the start
+     * @throws UnsupportedOperationException if the queue doesn't keep a time index
+     */
+    default boolean moveToTime(long epochNanos) {
+        throw new UnsupportedOperationException("This queue doesn't keep a time index");
+    }
+
     /**
      * Moves the index for this Tailer to the first existing excerpt in the queue.
      *
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.wire.Wire;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Extracts the key an excerpt is indexed by for {@link ChronicleQueue#indexForKey(long)}, e.g. an order id.
+ */
+@FunctionalInterface
+public interface KeyExtractor {
+    /**
+     * Returned for an excerpt which has no key.
+     */
+    long NO_KEY = Long.MIN_VALUE;
+
+    /**
+     * Invoked for each data excerpt, on the thread indexing or searching the queue. It must only read the wire.
+     *
+     * @param wire to read the excerpt from
+     * @return the key of the excerpt, or {@link #NO_KEY}
+     */
+    long keyOf(@NotNull Wire wire);
+}
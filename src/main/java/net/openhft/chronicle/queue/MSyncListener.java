@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue;
+
+/**
+ * A listener notified when the last index msync-ed to disk advances.
+ *
+ * @see ChronicleQueue#addMSyncListener(MSyncListener)
+ * @see ChronicleQueue#lastIndexMSynced()
+ */
+@FunctionalInterface
+public interface MSyncListener {
+
+    /**
+     * Invoked after {@link ChronicleQueue#lastIndexMSynced(long)} is called on this queue, by the thread which called it,
+     * so it should return promptly. Every excerpt up to and including {@code lastIndexMSynced} is durable.
+     * <p>
+     * Calls may be concurrent and the value reported can repeat or go back if they are.
+     *
+     * @param lastIndexMSynced the last index msync-ed to disk
+     */
+    void onMSynced(long lastIndexMSynced);
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.wire.DocumentContext;
+import net.openhft.chronicle.wire.Wire;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+import static net.openhft.chronicle.wire.NoDocumentContext.INSTANCE;
+
+/**
+ * Merges the excerpts of several tailers, usually of different queues, into one sequence ordered by a key read from
+ * each excerpt, e.g. the time an event happened.
+ * <p>
+ * Each tailer's next excerpt is read ahead for its key, then rolled back, and the tailers are kept in a heap of
+ * primitive keys, so {@link #readingDocument()} returns the context of the tailer with the lowest key without copying
+ * the excerpt or allocating. Keys which are equal are returned in the order the tailers were passed in.
+ * <p>
+ * A tailer with nothing to read is checked again on each call, so an excerpt appended to it later is merged from then
+ * on, even if its key is lower than one already returned. The tailers are not closed by this class, and like them, it
+ * is not thread-safe.
+ */
+public final class MergingTailer {
+    @NotNull
+    private final ToLongFunction<Wire> keyFunction;
+    @NotNull
+    private final ExcerptTailer[] tailers;
+    // excerpts with a lower key are skipped, until one which isn't is found, after moveToTime
+    private final long[] skipBefore;
+    private final boolean[] queued;
+    private final long[] heapKeys;
+    private final int[] heapTailers;
+    private int heapSize;
+    private int source = -1;
+    private long key;
+
+    /**
+     * @param keyFunction reads the key from an excerpt, it must not retain the wire
+     * @param tailers     to merge
+     */
+    public MergingTailer(@NotNull final ToLongFunction<Wire> keyFunction, @NotNull final ExcerptTailer... tailers) {
+        if (tailers.length == 0)
+            throw new IllegalArgumentException("No tailers to merge");
+        this.keyFunction = keyFunction;
+        this.tailers = tailers.clone();
+        this.skipBefore = new long[tailers.length];
+        this.queued = new boolean[tailers.length];
+        this.heapKeys = new long[tailers.length];
+        this.heapTailers = new int[tailers.length];
+        Arrays.fill(skipBefore, Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the context of the excerpt with the lowest key among the tailers' next excerpts, which must be closed before
+     * this is called again. Rolling it back returns the excerpt to the merge.
+     *
+     * @return the context of the next excerpt, which isn't present if none of the tailers has one
+     */
+    @NotNull
+    public DocumentContext readingDocument() {
+        for (int t = 0; t < tailers.length; t++)
+            if (!queued[t])
+                offer(t);
+        if (heapSize == 0)
+            return INSTANCE;
+        key = heapKeys[0];
+        source = poll();
+        return tailers[source].readingDocument();
+    }
+
+    /**
+     * Reads the key of the tailer's next excerpt and queues the tailer, leaving the excerpt to be read again.
+     */
+    private void offer(final int t) {
+        final ExcerptTailer tailer = tailers[t];
+        while (true) {
+            try (DocumentContext dc = tailer.readingDocument()) {
+                if (!dc.isPresent())
+                    return;
+                final long k = keyFunction.applyAsLong(dc.wire());
+                if (k < skipBefore[t])
+                    // consumed as the context closes
+                    continue;
+                skipBefore[t] = Long.MIN_VALUE;
+                dc.rollbackOnClose();
+                push(k, t);
+                return;
+            }
+        }
+    }
+
+    private void push(final long k, final int t) {
+        int i = heapSize++;
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (!before(k, t, heapKeys[parent], heapTailers[parent]))
+                break;
+            heapKeys[i] = heapKeys[parent];
+            heapTailers[i] = heapTailers[parent];
+            i = parent;
+        }
+        heapKeys[i] = k;
+        heapTailers[i] = t;
+        queued[t] = true;
+    }
+
+    private int poll() {
+        final int first = heapTailers[0];
+        queued[first] = false;
+        final int n = --heapSize;
+        final long k = heapKeys[n];
+        final int t = heapTailers[n];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n)
+                break;
+            if (child + 1 < n && before(heapKeys[child + 1], heapTailers[child + 1], heapKeys[child], heapTailers[child]))
+                child++;
+            if (!before(heapKeys[child], heapTailers[child], k, t))
+                break;
+            heapKeys[i] = heapKeys[child];
+            heapTailers[i] = heapTailers[child];
+            i = child;
+        }
+        heapKeys[i] = k;
+        heapTailers[i] = t;
+        return first;
+    }
+
+    private static boolean before(final long key1, final int tailer1, final long key2, final int tailer2) {
+        return key1 < key2 || (key1 == key2 && tailer1 < tailer2);
+    }
+
+    /**
+     * @return the position in the tailers passed in of the one the last excerpt was read from, or -1 if none has been
+     */
+    public int source() {
+        return source;
+    }
+
+    /**
+     * @return the key of the last excerpt read
+     */
+    public long key() {
+        return key;
+    }
+
+    /**
+     * Moves every tailer to the start of its queue.
+     */
+    @NotNull
+    public MergingTailer toStart() {
+        for (ExcerptTailer tailer : tailers)
+            tailer.toStart();
+        reset(Long.MIN_VALUE);
+        return this;
+    }
+
+    /**
+     * Moves every tailer to its first excerpt with a key of at least {@code time}, using
+     * {@link ExcerptTailer#moveToTime(long)} where the queue supports it, otherwise scanning from the start.
+     * <p>
+     * The key is taken to be in nanoseconds since the epoch, and no later than the time its excerpt was appended.
+     *
+     * @param time to move to, in nanoseconds since the epoch
+     */
+    @NotNull
+    public MergingTailer moveToTime(final long time) {
+        for (ExcerptTailer tailer : tailers) {
+            try {
+                tailer.moveToTime(time);
+            } catch (UnsupportedOperationException e) {
+                tailer.toStart();
+            }
+        }
+        reset(time);
+        return this;
+    }
+
+    private void reset(final long skipBefore) {
+        Arrays.fill(this.skipBefore, skipBefore);
+        Arrays.fill(queued, false);
+        heapSize = 0;
+        source = -1;
+    }
+}
@@ -135,18 +135,16 @@ public class PipeHandler extends AbstractHandler<PipeHandler> {
 
     static class PHEventPoller extends SimpleCloseable implements EventPoller {
         private final ExcerptTailer tailer;
-        private final Predicate<Wire> filter;
+        private final SubscribeHandler.BatchCopier copier;
 
         public PHEventPoller(ExcerptTailer tailer, Predicate<Wire> filter) {
             this.tailer = tailer;
-            this.filter = filter;
+            this.copier = new SubscribeHandler.BatchCopier(tailer, filter);
         }
 
         @Override
         public boolean onPoll(ChronicleChannel conn) {
-            boolean wrote = false;
-            while (SubscribeHandler.copyOneMessage(conn, tailer, filter)) wrote = true;
-            return wrote;
+            return copier.copy(conn);
         }
 
         @Override
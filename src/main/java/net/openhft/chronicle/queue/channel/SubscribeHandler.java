@@ -4,6 +4,7 @@ import net.openhft.affinity.AffinityLock;
 import net.openhft.chronicle.bytes.SyncMode;
 import net.openhft.chronicle.core.io.Closeable;
 import net.openhft.chronicle.core.io.SimpleCloseable;
+import net.openhft.chronicle.queue.BatchHandler;
 import net.openhft.chronicle.queue.ChronicleQueue;
 import net.openhft.chronicle.queue.ExcerptTailer;
 import net.openhft.chronicle.queue.channel.impl.SubscribeQueueChannel;
@@ -52,8 +53,9 @@ public class SubscribeHandler extends AbstractHandler<SubscribeHandler> {
             tailer.singleThreadedCheckDisabled(true);  // assume we are thread safe
             subscriptionIndexController.accept(tailer);
 
+            final BatchCopier copier = new BatchCopier(tailer, filter);
             while (!channel.isClosing()) {
-                if (copyOneMessage(channel, tailer, filter))
+                if (copier.copy(channel))
                     pauser.reset();
                 else
                     pauser.pause();
@@ -66,33 +68,51 @@ public class SubscribeHandler extends AbstractHandler<SubscribeHandler> {
         }
     }
 
-    static boolean copyOneMessage(ChronicleChannel channel, ExcerptTailer tailer, Predicate<Wire> filter) {
-        try (DocumentContext dc = tailer.readingDocument()) {
-            if (!dc.isPresent()) {
-                return false;
-            }
-            if (dc.isMetaData()) {
-                return true;
-            }
+    /**
+     * Copies excerpts from a tailer to a channel in batches, stopping once the channel has 32 KiB buffered so it can drain.
+     */
+    static final class BatchCopier implements BatchHandler {
+        static final int MAX_BATCH = 256;
 
-            Wire wire1 = dc.wire();
+        private final ExcerptTailer tailer;
+        private final Predicate<Wire> filter;
+        private ChronicleChannel channel;
+        private boolean full;
+
+        BatchCopier(ExcerptTailer tailer, Predicate<Wire> filter) {
+            this.tailer = tailer;
+            this.filter = filter;
+        }
+
+        /**
+         * @return true if any excerpts were copied, so there may be more to copy once the channel has drained
+         */
+        boolean copy(ChronicleChannel channel) {
+            this.channel = channel;
+            full = false;
+            boolean copied = false;
+            while (!full && tailer.readBatch(MAX_BATCH, this) > 0)
+                copied = true;
+            return copied;
+        }
+
+        @Override
+        public boolean onExcerpt(@NotNull Wire wire, long index) {
             if (filter != null) {
-                long pos = wire1.bytes().readPosition();
-                if (!filter.test(wire1)) {
-                    wire1.bytes().readPosition(wire1.bytes().readLimit());
+                long pos = wire.bytes().readPosition();
+                if (!filter.test(wire))
                     return true;
-                }
-                wire1.bytes().readPosition(pos);
+                wire.bytes().readPosition(pos);
             }
 
             try (DocumentContext dc2 = channel.writingDocument()) {
                 Wire wire2 = dc2.wire();
-                wire1.copyTo(wire2);
+                wire.copyTo(wire2);
 
-                final long dataBuffered = wire2.bytes().writePosition();
                 // wait for it to drain
-                return dataBuffered < 32 << 10;
+                full = wire2.bytes().writePosition() >= 32 << 10;
             }
+            return !full;
         }
     }
 
@@ -156,19 +176,16 @@ public class SubscribeHandler extends AbstractHandler<SubscribeHandler> {
 
     static class SHEventHandler extends SimpleCloseable implements EventPoller {
         private final ExcerptTailer tailer;
-        private final Predicate<Wire> filter;
+        private final BatchCopier copier;
 
         SHEventHandler(ExcerptTailer tailer, Predicate<Wire> filter) {
             this.tailer = tailer;
-            this.filter = filter;
+            this.copier = new BatchCopier(tailer, filter);
         }
 
         @Override
         public boolean onPoll(ChronicleChannel channel) {
-            boolean wrote = false;
-            while (copyOneMessage(channel, tailer, filter))
-                wrote = true;
-            return wrote;
+            return copier.copy(channel);
         }
 
         @Override
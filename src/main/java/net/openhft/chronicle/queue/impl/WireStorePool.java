@@ -25,21 +25,45 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.NavigableSet;
 
+/**
+ * Acquires the stores of cycles from a {@link WireStoreSupplier}.
+ * <p>
+ * A pool can keep the stores most recently closed mapped, rather than releasing them, and hand them out again when their
+ * cycles are next acquired. This saves remapping a cycle file for a tailer moving back and forth between cycles, e.g.
+ * reading backwards or searching. The {@link StoreFileListener} is told a store is released once it is evicted.
+ */
 public class WireStorePool extends SimpleCloseable {
     @NotNull
     private final WireStoreSupplier supplier;
     private final StoreFileListener storeFileListener;
+    private final int keepWarm;
+    private final long keepWarmMillis;
+    // stores closed but kept mapped, least recently closed first, guarded by itself
+    private final ArrayDeque<WarmStore> warm = new ArrayDeque<>();
 
-    private WireStorePool(@NotNull WireStoreSupplier supplier, StoreFileListener storeFileListener) {
+    private WireStorePool(@NotNull WireStoreSupplier supplier, StoreFileListener storeFileListener, int keepWarm, long keepWarmMillis) {
         this.supplier = supplier;
         this.storeFileListener = storeFileListener;
+        this.keepWarm = keepWarm;
+        this.keepWarmMillis = keepWarmMillis;
     }
 
     @NotNull
     public static WireStorePool withSupplier(@NotNull WireStoreSupplier supplier, StoreFileListener storeFileListener) {
-        return new WireStorePool(supplier, storeFileListener);
+        return new WireStorePool(supplier, storeFileListener, 0, 0);
+    }
+
+    /**
+     * @param keepWarm       the most closed stores to keep mapped
+     * @param keepWarmMillis how long to keep a closed store mapped, or 0 for as long as it is one of the most recent
+     */
+    @NotNull
+    public static WireStorePool withSupplier(@NotNull WireStoreSupplier supplier, StoreFileListener storeFileListener, int keepWarm, long keepWarmMillis) {
+        return new WireStorePool(supplier, storeFileListener, keepWarm, keepWarmMillis);
     }
 
     @Nullable
@@ -53,6 +77,12 @@ public class WireStorePool extends SimpleCloseable {
         if (oldStore != null && oldStore.cycle() == cycle && !oldStore.isClosed())
             return oldStore;
 
+        if (keepWarm > 0) {
+            final SingleChronicleQueueStore warmStore = takeWarm(cycle);
+            if (warmStore != null)
+                return warmStore;
+        }
+
         SingleChronicleQueueStore store = this.supplier.acquire(cycle, createStrategy);
         if (store != null) {
             store.cycle(cycle);
@@ -68,6 +98,52 @@ public class WireStorePool extends SimpleCloseable {
     }
 
     public void closeStore(@NotNull SingleChronicleQueueStore store) {
+        if (keepWarm > 0 && !isClosing() && !store.isClosing()) {
+            synchronized (warm) {
+                // performClose may have drained warm since the check above
+                if (isClosing()) {
+                    releaseStore(store);
+                    return;
+                }
+                warm.addLast(new WarmStore(store, System.currentTimeMillis()));
+                if (warm.size() > keepWarm)
+                    releaseStore(warm.removeFirst().store);
+                expireWarm();
+            }
+            return;
+        }
+        releaseStore(store);
+    }
+
+    @Nullable
+    private SingleChronicleQueueStore takeWarm(final int cycle) {
+        synchronized (warm) {
+            expireWarm();
+            for (Iterator<WarmStore> it = warm.descendingIterator(); it.hasNext(); ) {
+                final SingleChronicleQueueStore store = it.next().store;
+                if (store.cycle() != cycle)
+                    continue;
+                it.remove();
+                // the cycle file may have been deleted since
+                if (!store.isClosing() && store.file().exists())
+                    return store;
+                releaseStore(store);
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // called holding the lock on warm
+    private void expireWarm() {
+        if (keepWarmMillis <= 0)
+            return;
+        final long expired = System.currentTimeMillis() - keepWarmMillis;
+        while (!warm.isEmpty() && warm.peekFirst().closedMillis < expired)
+            releaseStore(warm.removeFirst().store);
+    }
+
+    private void releaseStore(@NotNull SingleChronicleQueueStore store) {
         BackgroundResourceReleaser.release(store);
         if (storeFileListener.isActive())
             BackgroundResourceReleaser.run(() -> storeFileListener.onReleased(store.cycle(), store.file()));
@@ -85,4 +161,23 @@ public class WireStorePool extends SimpleCloseable {
 
         return supplier.cycles(lowerCycle, upperCycle);
     }
+
+    @Override
+    protected void performClose() {
+        synchronized (warm) {
+            for (WarmStore warmStore : warm)
+                releaseStore(warmStore.store);
+            warm.clear();
+        }
+    }
+
+    static final class WarmStore {
+        final SingleChronicleQueueStore store;
+        final long closedMillis;
+
+        WarmStore(SingleChronicleQueueStore store, long closedMillis) {
+            this.store = store;
+            this.closedMillis = closedMillis;
+        }
+    }
 }
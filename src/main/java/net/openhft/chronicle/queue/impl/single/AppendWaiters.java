@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Threads parked in {@link StoreTailer#readingDocument(long, java.util.concurrent.TimeUnit)} until an excerpt is appended.
+ * <p>
+ * Appenders in this process unpark them on each commit, which costs a volatile read when no one is waiting. A waiter must
+ * {@link #add(Thread)} itself before its last check for an excerpt, so a commit after that check leaves it unparked.
+ * Appends by other processes are only seen when a waiter wakes to poll.
+ */
+final class AppendWaiters {
+    private final Set<Thread> waiters = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger count = new AtomicInteger();
+
+    void add(final Thread thread) {
+        if (waiters.add(thread))
+            count.incrementAndGet();
+    }
+
+    void remove(final Thread thread) {
+        if (waiters.remove(thread))
+            count.decrementAndGet();
+    }
+
+    /**
+     * Called after an excerpt has been committed.
+     */
+    void signal() {
+        if (count.get() == 0)
+            return;
+        for (Thread thread : waiters)
+            LockSupport.unpark(thread);
+    }
+}
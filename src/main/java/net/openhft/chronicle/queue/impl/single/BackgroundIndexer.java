@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.core.threads.EventHandler;
+import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
+import net.openhft.chronicle.queue.RollCycle;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.StreamCorruptedException;
+
+import static net.openhft.chronicle.wire.Wires.SPB_HEADER_SIZE;
+
+/**
+ * Adds index entries to each cycle on the queue's event loop, so appenders never write them, or allocate new index arrays,
+ * themselves. Until an entry has been added, moving to an index scans forward from the last entry before it.
+ */
+final class BackgroundIndexer extends AbstractCloseable implements EventHandler {
+    static final int MAX_BATCH = 1024;
+
+    @NotNull
+    private final SingleChronicleQueue queue;
+    // used on the event loop only
+    private StoreTailer tailer;
+
+    BackgroundIndexer(@NotNull final SingleChronicleQueue queue) {
+        this.queue = queue;
+        singleThreadedCheckDisabled(true);
+    }
+
+    @Override
+    public boolean action() throws InvalidEventHandlerException {
+        if (isClosing() || queue.isClosing()) {
+            releaseAll();
+            throw InvalidEventHandlerException.reusable();
+        }
+        if (tailer == null) {
+            tailer = new StoreTailer(queue, queue.pool);
+            resume();
+        }
+
+        int count = 0;
+        for (; count < MAX_BATCH; count++) {
+            try (DocumentContext dc = tailer.readingDocument()) {
+                if (!dc.isPresent())
+                    break;
+                final long index = dc.index();
+                if ((queue.rollCycle().toSequenceNumber(index) & (tailer.indexSpacing() - 1)) != 0)
+                    continue;
+                final long position = dc.wire().bytes().readPosition() - SPB_HEADER_SIZE;
+                final WriteLock writeLock = queue.writeLock();
+                writeLock.lock();
+                try {
+                    tailer.indexExcerpt(index, position);
+                } catch (StreamCorruptedException e) {
+                    // without the entry, moving to an index after it scans from the entry before
+                    Jvm.warn().on(getClass(), "Unable to index " + Long.toHexString(index) + ", skipping it", e);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        }
+        return count > 0;
+    }
+
+    /**
+     * Moves to the last entry indexed in the last cycle. Entries an earlier cycle is missing, e.g. after a crash, are not
+     * added, so moving to an index there scans from the entry before.
+     */
+    private void resume() {
+        final int lastCycle = queue.lastCycle();
+        if (lastCycle < 0 || !tailer.moveToCycle(lastCycle)) {
+            tailer.toStart();
+            return;
+        }
+        final RollCycle rollCycle = queue.rollCycle();
+        final long from = Math.max(0, tailer.nextEntryToBeIndexed() - tailer.indexSpacing());
+        if (!tailer.moveToIndex(rollCycle.toIndex(lastCycle, from)))
+            tailer.moveToCycle(lastCycle);
+    }
+
+    @Override
+    public void loopFinished() {
+        releaseAll();
+    }
+
+    private void releaseAll() {
+        Closeable.closeQuietly(tailer);
+        tailer = null;
+    }
+
+    @Override
+    protected void performClose() {
+        // the tailer is released on the event loop, as it may be using it
+    }
+}
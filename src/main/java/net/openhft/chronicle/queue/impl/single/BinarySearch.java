@@ -19,19 +19,25 @@
 package net.openhft.chronicle.queue.impl.single;
 
 import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.KeyExtractor;
 import net.openhft.chronicle.queue.RollCycle;
+import net.openhft.chronicle.queue.reader.comparator.NumericBinarySearchComparator;
 import net.openhft.chronicle.wire.DocumentContext;
 import net.openhft.chronicle.wire.Wire;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.text.ParseException;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.NavigableSet;
+import java.util.function.ToLongFunction;
 
 public enum BinarySearch {
     INSTANCE;
 
+    // the result of a comparison with a cycle which has no comparable excerpt, or whose key range isn't known
+    private static final long NONE = Long.MIN_VALUE;
+
     @Deprecated(/* Remove in x.26. Instead please use search(net.openhft.chronicle.queue.ExcerptTailer, net.openhft.chronicle.wire.Wire, java.util.Comparator<net.openhft.chronicle.wire.Wire>) */)
     public static long search(@NotNull SingleChronicleQueue q,
                               @NotNull Wire key,
@@ -52,6 +58,38 @@ public enum BinarySearch {
     public static long search(@NotNull ExcerptTailer tailer,
                               @NotNull Wire key,
                               @NotNull Comparator<Wire> c) {
+        return search(tailer, key, c, false, null);
+    }
+
+    /**
+     * As {@link #search(ExcerptTailer, Wire, Comparator)}, keeping the keys of the excerpts probed in {@code cache} so
+     * repeated searches don't read them again. Only the keys of a {@link NumericBinarySearchComparator} are cached, see
+     * {@link #findWithinCycle}.
+     */
+    public static long search(@NotNull ExcerptTailer tailer,
+                              @NotNull Wire key,
+                              @NotNull Comparator<Wire> c,
+                              @Nullable BinarySearchKeyCache cache) {
+        return search(tailer, key, c, false, cache);
+    }
+
+    /**
+     * As {@link #search(ExcerptTailer, Wire, Comparator)}, but when the queue has a {@link KeyExtractor}, cycles are
+     * ruled in or out using the lowest and highest key recorded for each complete cycle by the key index, so most cycles
+     * are never mapped. The comparator must order excerpts as the key extractor orders their keys, and {@code key} must
+     * be readable by the key extractor.
+     */
+    public static long searchByKey(@NotNull ExcerptTailer tailer,
+                                   @NotNull Wire key,
+                                   @NotNull Comparator<Wire> c) {
+        return search(tailer, key, c, true, null);
+    }
+
+    private static long search(@NotNull ExcerptTailer tailer,
+                               @NotNull Wire key,
+                               @NotNull Comparator<Wire> c,
+                               boolean byKey,
+                               @Nullable BinarySearchKeyCache cache) {
         final long readPosition = key.bytes().readPosition();
         try {
             final long start = tailer.toStart().index();
@@ -62,70 +100,122 @@ public enum BinarySearch {
             final int endCycle = rollCycle.toCycle(end);
 
             if (startCycle == endCycle)
-                return findWithinCycle(key, c, startCycle, tailer, rollCycle);
+                return findWithinCycle(key, c, startCycle, tailer, rollCycle, cache);
+
+            final SingleChronicleQueue queue = (SingleChronicleQueue) tailer.queue();
+            final KeyIndex keyIndex = byKey ? queue.keyIndex() : null;
+            final long keyValue = keyIndex == null ? 0 : keyIndex.keyOf(key);
+            key.bytes().readPosition(readPosition);
 
-            final NavigableSet<Long> cycles = ((SingleChronicleQueue)tailer.queue()).listCyclesBetween(startCycle, endCycle);
-            final int cycle = (int) findCycleLinearSearch(cycles, key, c, tailer);
+            final NavigableSet<Long> cycles = queue.listCyclesBetween(startCycle, endCycle);
+            final int cycle = (int) findCycleBinarySearch(cycles, key, c, tailer, keyIndex, keyValue);
 
             if (cycle == -1)
                 return -1;
-            return findWithinCycle(key, c, cycle, tailer, rollCycle);
+            return findWithinCycle(key, c, cycle, tailer, rollCycle, cache);
         } finally {
             key.bytes().readPosition(readPosition);
         }
     }
 
-    private static long findCycleLinearSearch(@NotNull NavigableSet<Long> cycles, Wire key,
+    /**
+     * @return the first cycle whose first comparable excerpt matches {@code key}, otherwise the last cycle whose first
+     * comparable excerpt is before it, or the first cycle if there is none
+     */
+    private static long findCycleBinarySearch(@NotNull NavigableSet<Long> cycles, Wire key,
                                               @NotNull Comparator<Wire> c,
-                                              @NotNull ExcerptTailer tailer) {
-        long readPosition = key.bytes().readPosition();
-
-        final Iterator<Long> iterator = cycles.iterator();
-        if (!iterator.hasNext())
+                                              @NotNull ExcerptTailer tailer,
+                                              KeyIndex keyIndex,
+                                              long keyValue) {
+        if (cycles.isEmpty())
             return -1;
-        final RollCycle rollCycle = tailer.queue().rollCycle();
-        long prevIndex = iterator.next();
-
-        cycleLoop:
-        while (iterator.hasNext()) {
+        final long[] cycleArray = new long[cycles.size()];
+        int n = 0;
+        for (Long cycle : cycles)
+            cycleArray[n++] = cycle;
 
-            final Long current = iterator.next();
+        long result = cycleArray[0];
+        long match = -1;
+        int low = 0;
+        int high = n - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            // cycles without a comparable excerpt are skipped, looking forward from the middle
+            int probe = mid;
+            long cmp = NONE;
+            for (; probe <= high; probe++) {
+                final int cycle = (int) cycleArray[probe];
+                cmp = keyIndex == null ? NONE : compareKeyRange(keyIndex, cycle, keyValue);
+                if (cmp == NONE)
+                    cmp = compareFirst(cycle, key, c, tailer);
+                if (cmp != NONE)
+                    break;
+            }
+            if (cmp == NONE) {
+                high = mid - 1;
+            } else if (cmp < 0) {
+                result = cycleArray[probe];
+                low = probe + 1;
+            } else {
+                // a key repeated across cycles is found in the first of them
+                if (cmp == 0)
+                    match = cycleArray[probe];
+                high = mid - 1;
+            }
+        }
+        return match == -1 ? result : match;
+    }
 
-            final boolean b = tailer.moveToIndex(rollCycle.toIndex((int) (long) current, 0));
-            if (!b)
-                return prevIndex;
+    /**
+     * Compares a complete cycle with {@code keyValue} using the range of keys recorded by the key index, where 0 means the
+     * key is within the range, so the cycle is the one to search.
+     */
+    private static long compareKeyRange(@NotNull KeyIndex keyIndex, int cycle, long keyValue) {
+        // the table of the cycle stays mapped between probes and searches
+        final long[] range = keyIndex.keyRange(cycle);
+        // unknown, or the cycle has no keys
+        if (range == null || range[0] > range[1])
+            return NONE;
+        if (keyValue < range[0])
+            return 1;
+        if (keyValue > range[1])
+            return -1;
+        return 0;
+    }
 
-            while (true) {
-                try (final DocumentContext dc = tailer.readingDocument()) {
-                    if (!dc.isPresent()) {
-                        return prevIndex;
-                    }
-                    if (rollCycle.toCycle(dc.index()) > current) {
-                        continue cycleLoop;
-                    }
-                    try {
-                        final int compare = c.compare(dc.wire(), key);
-                        if (compare == 0)
-                            return current;
-                        else if (compare > 0)
-                            return prevIndex;
-                        prevIndex = current;
-                        break;
-                    } catch (NotComparableException e) {
-                        // Keep scanning forward
-                    } finally {
-                        key.bytes().readPosition(readPosition);
-                    }
+    /**
+     * Compares the first comparable excerpt in {@code cycle} with {@code key}.
+     */
+    private static long compareFirst(int cycle, Wire key,
+                                     @NotNull Comparator<Wire> c,
+                                     @NotNull ExcerptTailer tailer) {
+        final long readPosition = key.bytes().readPosition();
+        final RollCycle rollCycle = tailer.queue().rollCycle();
+        if (!tailer.moveToIndex(rollCycle.toIndex(cycle, 0)))
+            return NONE;
+        while (true) {
+            try (final DocumentContext dc = tailer.readingDocument()) {
+                if (!dc.isPresent() || rollCycle.toCycle(dc.index()) != cycle)
+                    return NONE;
+                try {
+                    return c.compare(dc.wire(), key);
+                } catch (NotComparableException e) {
+                    // Keep scanning forward
+                } finally {
+                    key.bytes().readPosition(readPosition);
                 }
             }
         }
-        return prevIndex;
     }
 
     /**
      * @return The index if an exact match is found, an approximation in the form of -approximateIndex
      * or a negative number (- the approx index) if there was no searching to be done.
      * <p>
+     * If the comparator is a {@link NumericBinarySearchComparator}, the cycle is searched by interpolating the key it
+     * orders excerpts by, alternating with bisection whenever a probe fails to halve the range. A key which isn't found
+     * is approximated by the same index bisection would return.
+     * <p>
      * Warning : This implementation is unreliable as index are an encoded 64bits, where we could use all the bits including the
      * high bit which is used for the sign. At the moment  it will work as its unlikely to reach a point where we store
      * enough messages in the chronicle queue to use the high bit, having said this its possible in the future the
@@ -137,6 +227,15 @@ public enum BinarySearch {
                                        int cycle,
                                        @NotNull ExcerptTailer tailer,
                                        @NotNull final RollCycle rollCycle) {
+        return findWithinCycle(key, c, cycle, tailer, rollCycle, null);
+    }
+
+    private static long findWithinCycle(@NotNull Wire key,
+                                        @NotNull Comparator<Wire> c,
+                                        int cycle,
+                                        @NotNull ExcerptTailer tailer,
+                                        @NotNull final RollCycle rollCycle,
+                                        @Nullable BinarySearchKeyCache cache) {
         final long readPosition = key.bytes().readPosition();
         try {
             long lowSeqNum = 0;
@@ -147,6 +246,52 @@ public enum BinarySearch {
             if (highSeqNum < lowSeqNum)
                 return -1;
 
+            if (c instanceof NumericBinarySearchComparator) {
+                final NumericBinarySearchComparator keyOf = (NumericBinarySearchComparator) c;
+                final long lastSeqNum = highSeqNum;
+                try {
+                    final long target = keyOf.applyAsLong(key);
+                    key.bytes().readPosition(readPosition);
+
+                    long lowKey = keyAt(keyOf, cache, tailer, rollCycle, cycle, lowSeqNum);
+                    if (lowKey == target)
+                        return rollCycle.toIndex(cycle, lowSeqNum);
+                    if (lowKey > target)
+                        return approximateIndex(rollCycle, cycle, lastSeqNum, lowSeqNum);
+                    long highKey = keyAt(keyOf, cache, tailer, rollCycle, cycle, highSeqNum);
+                    if (highKey == target)
+                        return rollCycle.toIndex(cycle, highSeqNum);
+                    if (highKey < target)
+                        return approximateIndex(rollCycle, cycle, lastSeqNum, highSeqNum + 1);
+
+                    // the key is after lowSeqNum and before highSeqNum
+                    boolean bisect = false;
+                    while (highSeqNum - lowSeqNum > 1) {
+                        final long range = highSeqNum - lowSeqNum;
+                        final long probe = bisect
+                                ? (lowSeqNum + highSeqNum) >>> 1
+                                : interpolate(lowSeqNum, lowKey, highSeqNum, highKey, target);
+                        final long probeKey = keyAt(keyOf, cache, tailer, rollCycle, cycle, probe);
+                        if (probeKey == target)
+                            return rollCycle.toIndex(cycle, probe);
+                        if (probeKey < target) {
+                            lowSeqNum = probe;
+                            lowKey = probeKey;
+                        } else {
+                            highSeqNum = probe;
+                            highKey = probeKey;
+                        }
+                        // an interpolation which doesn't halve the range is followed by a bisection
+                        bisect = !bisect && highSeqNum - lowSeqNum > range / 2;
+                    }
+                    return approximateIndex(rollCycle, cycle, lastSeqNum, highSeqNum);
+                } catch (NotComparableException e) {
+                    // bisect what is left of the range
+                } finally {
+                    key.bytes().readPosition(readPosition);
+                }
+            }
+
             long midIndex = 0;
 
             while (lowSeqNum <= highSeqNum) {
@@ -190,4 +335,60 @@ public enum BinarySearch {
             key.bytes().readPosition(readPosition);
         }
     }
+
+    /**
+     * @return what the bisection in {@link #findWithinCycle} returns for a key which isn't in the cycle and would be
+     * inserted at {@code insertSeqNum}, - the index of its last probe, without reading any excerpts
+     */
+    private static long approximateIndex(@NotNull RollCycle rollCycle, int cycle, long lastSeqNum, long insertSeqNum) {
+        long lowSeqNum = 0;
+        long highSeqNum = lastSeqNum;
+        long midIndex = 0;
+        while (lowSeqNum <= highSeqNum) {
+            final long midSeqNumber = (lowSeqNum + highSeqNum) >>> 1L;
+            midIndex = rollCycle.toIndex(cycle, midSeqNumber);
+            if (midSeqNumber < insertSeqNum)
+                lowSeqNum = midSeqNumber + 1;
+            else
+                highSeqNum = midSeqNumber - 1;
+        }
+        return midIndex == 0 ? -1 : -midIndex;
+    }
+
+    /**
+     * @return the sequence number strictly between {@code lowSeqNum} and {@code highSeqNum} where {@code target} would
+     * be if keys were spread evenly between {@code lowKey} and {@code highKey}
+     */
+    private static long interpolate(long lowSeqNum, long lowKey, long highSeqNum, long highKey, long target) {
+        final double fraction = ((double) target - lowKey) / ((double) highKey - lowKey);
+        final long probe = lowSeqNum + 1 + (long) ((highSeqNum - lowSeqNum - 1) * fraction);
+        return Math.max(lowSeqNum + 1, Math.min(highSeqNum - 1, probe));
+    }
+
+    /**
+     * @throws NotComparableException if there is no comparable excerpt at {@code seqNum}
+     */
+    private static long keyAt(@NotNull ToLongFunction<Wire> keyOf,
+                              @Nullable BinarySearchKeyCache cache,
+                              @NotNull ExcerptTailer tailer,
+                              @NotNull RollCycle rollCycle,
+                              int cycle,
+                              long seqNum) {
+        final long index = rollCycle.toIndex(cycle, seqNum);
+        if (cache != null) {
+            final long key = cache.get(index);
+            if (key != BinarySearchKeyCache.NOT_CACHED)
+                return key;
+        }
+        if (!tailer.moveToIndex(index))
+            throw NotComparableException.INSTANCE;
+        try (DocumentContext dc = tailer.readingDocument()) {
+            if (!dc.isPresent() || dc.index() != index)
+                throw NotComparableException.INSTANCE;
+            final long key = keyOf.applyAsLong(dc.wire());
+            if (cache != null)
+                cache.put(index, key);
+            return key;
+        }
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.Maths;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import net.openhft.chronicle.queue.reader.comparator.NumericBinarySearchComparator;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the keys {@link BinarySearch} reads from the excerpts it probes, by index, so repeated searches of
+ * the same cycles don't move to and read those excerpts again.
+ * <p>
+ * The keys are held off heap in a direct-mapped table, so each index has one slot and a key evicts whichever key was in its
+ * slot. Each slot has a stamp which is odd while the slot is being written and grows with each write, so gets take no lock,
+ * and a put which finds its slot being written by another thread is dropped. The stamp of a cleared
+ * slot is negated, so it keeps growing.
+ * <p>
+ * A cache holds the keys returned by one {@link NumericBinarySearchComparator} from one queue, and may be shared by
+ * threads searching that queue. Excerpts don't change once written, so keys are never stale, but a cache should be
+ * cleared if the queue's files are replaced.
+ */
+public final class BinarySearchKeyCache extends AbstractCloseable {
+    /**
+     * Returned by {@link #get(long)} when there is no key for the index. A key of this value is never cached.
+     */
+    static final long NOT_CACHED = Long.MIN_VALUE;
+
+    private static final long STAMP = 0;
+    private static final long INDEX = 8;
+    private static final long KEY = 16;
+    private static final long SLOT_SIZE = 24;
+
+    private final BytesStore<?, Void> store;
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity the most keys to keep
+     */
+    public BinarySearchKeyCache(final int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive, was " + capacity);
+        this.capacity = capacity;
+        this.store = BytesStore.nativeStore(capacity * SLOT_SIZE);
+        this.store.zeroOut(0, capacity * SLOT_SIZE);
+
+        // shared by threads searching the same queue
+        singleThreadedCheckDisabled(true);
+    }
+
+    private long slot(final long index) {
+        return ((Maths.agitate(index) & Long.MAX_VALUE) % capacity) * SLOT_SIZE;
+    }
+
+    /**
+     * @return the key of the excerpt at {@code index}, or {@link #NOT_CACHED}
+     */
+    long get(final long index) {
+        throwExceptionIfClosed();
+        final long slot = slot(index);
+        final long stamp = store.readVolatileLong(slot + STAMP);
+        if (stamp > 0 && (stamp & 1) == 0) {
+            final long cachedIndex = store.readVolatileLong(slot + INDEX);
+            final long key = store.readVolatileLong(slot + KEY);
+            // the slot wasn't rewritten while it was read
+            if (cachedIndex == index && store.readVolatileLong(slot + STAMP) == stamp) {
+                hits.increment();
+                return key;
+            }
+        }
+        misses.increment();
+        return NOT_CACHED;
+    }
+
+    void put(final long index, final long key) {
+        throwExceptionIfClosed();
+        if (key == NOT_CACHED)
+            return;
+        final long slot = slot(index);
+        final long stamp = store.readVolatileLong(slot + STAMP);
+        final long next = Math.abs(stamp);
+        if ((stamp & 1) != 0 || !store.compareAndSwapLong(slot + STAMP, stamp, next + 1))
+            return;
+        store.writeOrderedLong(slot + INDEX, index);
+        store.writeOrderedLong(slot + KEY, key);
+        store.writeOrderedLong(slot + STAMP, next + 2);
+    }
+
+    public int size() {
+        throwExceptionIfClosed();
+        int size = 0;
+        for (long slot = 0; slot < capacity * SLOT_SIZE; slot += SLOT_SIZE)
+            if (store.readVolatileLong(slot + STAMP) > 0)
+                size++;
+        return size;
+    }
+
+    /**
+     * @return how many keys have been found in the cache
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return how many keys had to be read from an excerpt
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    public void clear() {
+        throwExceptionIfClosed();
+        for (long slot = 0; slot < capacity * SLOT_SIZE; slot += SLOT_SIZE) {
+            while (true) {
+                final long stamp = store.readVolatileLong(slot + STAMP);
+                if (stamp <= 0)
+                    break;
+                if ((stamp & 1) == 0 && store.compareAndSwapLong(slot + STAMP, stamp, stamp + 1)) {
+                    store.writeOrderedLong(slot + STAMP, -(stamp + 2));
+                    break;
+                }
+                Jvm.nanoPause();
+            }
+        }
+    }
+
+    @Override
+    protected void performClose() {
+        store.releaseLast();
+    }
+
+    @Override
+    public String toString() {
+        return "BinarySearchKeyCache{" +
+                "capacity=" + capacity +
+                ", hits=" + hits.sum() +
+                ", misses=" + misses.sum() +
+                '}';
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.core.values.LongValue;
+import net.openhft.chronicle.queue.impl.TableStore;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Summaries of closed cycles, kept in the queue's table store so they survive restarts and are shared between processes.
+ * <p>
+ * When an appender rolls and writes the end of file marker of a cycle, it records the number of excerpts in that cycle,
+ * where its data ends and when it was closed. Counting the excerpts of a closed cycle is then a lookup rather than a search of
+ * its index. The summaries are read into sorted arrays, which are only reloaded when the directory listing changes.
+ * <p>
+ * Keys can't be removed from a table store, so a summary is kept in one of a fixed number of slots chosen by its cycle and is
+ * overwritten by the summary of a later cycle sharing the slot. The table store stays the same size however long the queue
+ * lives, and only the summaries of the most recent {@link #SLOTS} cycles are kept. Summaries of cycles whose files have been
+ * deleted are ignored, and a cycle's summary is dropped when its file is created again, or when an appender writes to it
+ * with {@link StoreAppender#writeBytes(long, net.openhft.chronicle.bytes.BytesStore)} after a later cycle exists. Each change
+ * bumps a version in the table store, so every process reloads the summaries before using them again.
+ */
+final class CycleSummaries implements Closeable {
+    static final int SLOTS = Math.max(1, Jvm.getInteger("chronicle.queue.cycleSummaries", 1024));
+    static final String PREFIX = "cycleSummary.";
+    static final String CYCLE = ".cycle";
+    static final String COUNT = ".count";
+    static final String LENGTH = ".length";
+    static final String CLOSED = ".closed";
+    // doesn't start with the PREFIX, so it isn't taken for a slot
+    static final String VERSION = "cycleSummaries.version";
+
+    @NotNull
+    private final SingleChronicleQueue queue;
+    @NotNull
+    private final TableStore<?> tableStore;
+    @NotNull
+    private final LongValue version;
+    private volatile Snapshot snapshot = new Snapshot(Long.MIN_VALUE, Integer.MIN_VALUE, Long.MIN_VALUE, 0);
+    private boolean closed;
+
+    CycleSummaries(@NotNull final SingleChronicleQueue queue, @NotNull final TableStore<?> tableStore) {
+        this.queue = queue;
+        this.tableStore = tableStore;
+        this.version = tableStore.doWithExclusiveLock(ts -> ts.acquireValueFor(VERSION, 0));
+    }
+
+    /**
+     * Records the summary of a cycle an appender has just written the end of file marker to.
+     */
+    void onClosed(final int cycle, final long count, final long length, final long closedTimestamp) {
+        final String slot = PREFIX + Math.floorMod(cycle, SLOTS);
+        tableStore.doWithExclusiveLock(ts -> {
+            // the slot is invalid while it is overwritten
+            set(ts, slot + CYCLE, -1);
+            set(ts, slot + LENGTH, length);
+            set(ts, slot + CLOSED, closedTimestamp);
+            set(ts, slot + COUNT, count);
+            // written last as it marks the summary as complete
+            set(ts, slot + CYCLE, cycle);
+            version.addAtomicValue(1);
+            return null;
+        });
+    }
+
+    /**
+     * Drops the summary of {@code cycle} as its file has just been created, e.g. again after it was deleted.
+     */
+    void onCreated(final int cycle) {
+        drop(cycle);
+    }
+
+    /**
+     * Drops the summary of {@code cycle} as an appender has written to it after a later cycle was created, so the count
+     * and length recorded when it was closed no longer apply.
+     */
+    void onWrittenTo(final int cycle) {
+        drop(cycle);
+    }
+
+    private void drop(final int cycle) {
+        final String slot = PREFIX + Math.floorMod(cycle, SLOTS);
+        tableStore.doWithExclusiveLock(ts -> {
+            try (LongValue longValue = ts.acquireValueFor(slot + CYCLE, -1)) {
+                if (longValue.compareAndSwapValue(cycle, -1))
+                    version.addAtomicValue(1);
+            }
+            return null;
+        });
+    }
+
+    private static void set(final TableStore<?> ts, final String key, final long value) {
+        try (LongValue longValue = ts.acquireValueFor(key, -1)) {
+            longValue.setVolatileValue(value);
+        }
+    }
+
+    /**
+     * @return the number of excerpts in a closed {@code cycle}, or -1 if there is no summary of it
+     */
+    long excerptCount(final int cycle) {
+        final Snapshot s = snapshot();
+        final int i = Arrays.binarySearch(s.cycles, 0, s.size, cycle);
+        return i < 0 ? -1 : s.counts[i];
+    }
+
+    /**
+     * @return the position at which the data of a closed {@code cycle} ends, or -1 if there is no summary of it
+     */
+    long length(final int cycle) {
+        final Snapshot s = snapshot();
+        final int i = Arrays.binarySearch(s.cycles, 0, s.size, cycle);
+        return i < 0 ? -1 : s.lengths[i];
+    }
+
+    /**
+     * @return the time in milliseconds at which {@code cycle} was closed, or -1 if there is no summary of it
+     */
+    long closedTimestamp(final int cycle) {
+        final Snapshot s = snapshot();
+        final int i = Arrays.binarySearch(s.cycles, 0, s.size, cycle);
+        return i < 0 ? -1 : s.closed[i];
+    }
+
+    @NotNull
+    private Snapshot snapshot() {
+        Snapshot s = snapshot;
+        final long modCount = queue.directoryListingModCount();
+        // without a modCount, a change of the last cycle is the only sign of a roll
+        final int lastCycle = modCount == -1 ? queue.lastCycle() : Integer.MIN_VALUE;
+        final long v = version.getVolatileValue();
+        if (s.modCount != modCount || modCount == -1 && s.lastCycle != lastCycle || s.version != v) {
+            s = load(modCount, lastCycle, v);
+            snapshot = s;
+        }
+        return s;
+    }
+
+    @NotNull
+    private Snapshot load(final long modCount, final int lastCycle, final long version) {
+        final Slots slots = new Slots();
+        tableStore.forEachKey(slots, (acc, key, value) -> {
+            final String k = key.toString();
+            if (!k.startsWith(PREFIX))
+                return;
+            final int end = k.lastIndexOf('.');
+            if (end <= PREFIX.length())
+                return;
+            final int slot;
+            try {
+                slot = Integer.parseInt(k.substring(PREFIX.length(), end));
+            } catch (NumberFormatException e) {
+                return;
+            }
+            if (slot < 0 || slot >= SLOTS)
+                return;
+            final long v = value.int64();
+            switch (k.substring(end)) {
+                case CYCLE:
+                    acc.cycles[slot] = v;
+                    break;
+                case COUNT:
+                    acc.counts[slot] = v;
+                    break;
+                case LENGTH:
+                    acc.lengths[slot] = v;
+                    break;
+                case CLOSED:
+                    acc.closed[slot] = v;
+                    break;
+                default:
+                    break;
+            }
+        });
+
+        // only cycles whose files are still there, and have been rolled from, are summarised
+        final int first = queue.firstCycle();
+        final int last = queue.lastCycle();
+        final Snapshot s = new Snapshot(modCount, lastCycle, version, 16);
+        for (int i = 0; i < SLOTS; i++) {
+            final long cycle = slots.cycles[i];
+            if (cycle < first || cycle >= last || slots.counts[i] < 0 || Math.floorMod(cycle, SLOTS) != i)
+                continue;
+            final Snapshot at = s.at((int) cycle);
+            at.counts[at.index] = slots.counts[i];
+            at.lengths[at.index] = slots.lengths[i];
+            at.closed[at.index] = slots.closed[i];
+        }
+        return s;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        version.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * The values of every slot as read from the table store.
+     */
+    static final class Slots {
+        final long[] cycles = new long[SLOTS];
+        final long[] counts = new long[SLOTS];
+        final long[] lengths = new long[SLOTS];
+        final long[] closed = new long[SLOTS];
+
+        Slots() {
+            Arrays.fill(cycles, -1);
+            Arrays.fill(counts, -1);
+        }
+    }
+
+    static final class Snapshot {
+        final long modCount;
+        final int lastCycle;
+        final long version;
+        int[] cycles;
+        long[] counts;
+        long[] lengths;
+        long[] closed;
+        int size;
+        // the slot found by the last call to at()
+        int index;
+
+        Snapshot(final long modCount, final int lastCycle, final long version, final int capacity) {
+            this.modCount = modCount;
+            this.lastCycle = lastCycle;
+            this.version = version;
+            cycles = new int[capacity];
+            counts = new long[capacity];
+            lengths = new long[capacity];
+            closed = new long[capacity];
+        }
+
+        Snapshot at(final int cycle) {
+            int i = Arrays.binarySearch(cycles, 0, size, cycle);
+            if (i < 0) {
+                i = -i - 1;
+                if (size == cycles.length) {
+                    final int capacity = cycles.length * 2;
+                    cycles = Arrays.copyOf(cycles, capacity);
+                    counts = Arrays.copyOf(counts, capacity);
+                    lengths = Arrays.copyOf(lengths, capacity);
+                    closed = Arrays.copyOf(closed, capacity);
+                }
+                final int moved = size - i;
+                System.arraycopy(cycles, i, cycles, i + 1, moved);
+                System.arraycopy(counts, i, counts, i + 1, moved);
+                System.arraycopy(lengths, i, lengths, i + 1, moved);
+                System.arraycopy(closed, i, closed, i + 1, moved);
+                cycles[i] = cycle;
+                counts[i] = lengths[i] = closed[i] = -1;
+                size++;
+            }
+            index = i;
+            return this;
+        }
+    }
+}
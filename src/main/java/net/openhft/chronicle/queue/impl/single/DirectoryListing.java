@@ -39,4 +39,17 @@ public interface DirectoryListing extends Closeable {
     long modCount();
 
     void onRoll(int cycle);
+
+    /**
+     * @return the last index appended, or -1 if it is not tracked
+     */
+    default long lastIndex() {
+        return -1;
+    }
+
+    /**
+     * Called by appenders once the excerpt at {@code index} has been committed.
+     */
+    default void onAppend(long index) {
+    }
 }
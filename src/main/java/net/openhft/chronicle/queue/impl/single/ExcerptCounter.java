@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the excerpts in a range of cycles for {@link SingleChronicleQueue#countExcerpts(long, long)}.
+ * <p>
+ * The count of a cycle is its last sequence number, found from the index arrays of the store plus a scan of at most one
+ * index spacing, by a tailer used for that count alone. Once a later cycle exists a cycle is normally no longer appended
+ * to, so its count is cached along with the creation time of the file it was counted in. A cached count is dropped when an
+ * appender writes to its cycle with {@link StoreAppender#writeBytes(long, net.openhft.chronicle.bytes.BytesStore)}, and
+ * when the directory listing changes unless the cycle's file was created at the same time.
+ * <p>
+ * The cycles on disk are held as an {@code int[]} which is only rebuilt when the directory listing changes, so repeated
+ * counts allocate nothing. Counts are made from any thread without locking.
+ */
+final class ExcerptCounter extends AbstractCloseable {
+    // a count which isn't known yet
+    private static final long UNKNOWN = -1;
+    // a count which isn't cached as its cycle has been written to since the cycles were listed
+    private static final long WRITTEN_TO = -2;
+
+    @NotNull
+    private final SingleChronicleQueue queue;
+    private volatile Cycles cycles = new Cycles(Long.MIN_VALUE, new int[0], new File[0]);
+
+    ExcerptCounter(@NotNull final SingleChronicleQueue queue) {
+        this.queue = queue;
+        // counts are made from any thread
+        singleThreadedCheckDisabled(true);
+    }
+
+    /**
+     * @return the number of excerpts in {@code cycle}, or -1 if the cycle doesn't exist
+     */
+    long excerptsInCycle(final int cycle) {
+        throwExceptionIfClosed();
+        final Cycles c = refreshCycles(false);
+        final int i = Arrays.binarySearch(c.cycles, cycle);
+        if (i >= 0) {
+            final long count = c.counts.get(i);
+            if (count >= 0)
+                return count;
+        }
+        return count(c, i, cycle, queue.lastCycle());
+    }
+
+    /**
+     * @return the number of excerpts from {@code lowerCycle} inclusive to {@code upperCycle} exclusive
+     * @throws IllegalStateException if either cycle is not on disk
+     */
+    long excerptsInCycles(final int lowerCycle, final int upperCycle) {
+        throwExceptionIfClosed();
+        Cycles c = refreshCycles(false);
+        int lower = Arrays.binarySearch(c.cycles, lowerCycle);
+        int upper = Arrays.binarySearch(c.cycles, upperCycle);
+        if (lower < 0 || upper < 0) {
+            // the listing may not have caught up with a cycle just created
+            c = refreshCycles(true);
+            lower = Arrays.binarySearch(c.cycles, lowerCycle);
+            upper = Arrays.binarySearch(c.cycles, upperCycle);
+        }
+        if (lower < 0)
+            throw new IllegalStateException("Cycle not found, lower-cycle=" + Long.toHexString(lowerCycle));
+        if (upper < 0)
+            throw new IllegalStateException("Cycle not found,  upper-cycle=" + Long.toHexString(upperCycle));
+
+        final int lastCycle = queue.lastCycle();
+        long result = 0;
+        for (int i = lower; i < upper; i++) {
+            long count = c.counts.get(i);
+            if (count < 0)
+                count = count(c, i, c.cycles[i], lastCycle);
+            result += count;
+        }
+        return result;
+    }
+
+    /**
+     * Drops the cached count of {@code cycle}, as an appender has written to it.
+     */
+    void onWrittenTo(final int cycle) {
+        final Cycles c = cycles;
+        final int i = Arrays.binarySearch(c.cycles, cycle);
+        if (i >= 0)
+            c.counts.set(i, WRITTEN_TO);
+    }
+
+    private long count(final Cycles c, final int i, final int cycle, final int lastCycle) {
+        // read before counting, so a count is never cached against a file created after it was made
+        final long created = i >= 0 && cycle < lastCycle ? creationTime(c.files[i]) : UNKNOWN;
+        final long count;
+        try (StoreTailer tailer = new StoreTailer(queue, queue.pool)) {
+            count = tailer.exactExcerptsInCycle(cycle);
+        }
+        if (count >= 0 && created != UNKNOWN) {
+            c.created.set(i, created);
+            c.counts.compareAndSet(i, UNKNOWN, count);
+        }
+        return count;
+    }
+
+    /**
+     * @return the time {@code file} was created, or -1 if it isn't known
+     */
+    private static long creationTime(final File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).creationTime().toMillis();
+        } catch (IOException e) {
+            return UNKNOWN;
+        }
+    }
+
+    @NotNull
+    private Cycles refreshCycles(final boolean force) {
+        final Cycles c = cycles;
+        final long directoryModCount = queue.directoryListingModCount();
+        if (!force && directoryModCount != -1 && directoryModCount == c.modCount)
+            return c;
+
+        final NavigableMap<Long, File> tree = queue.cycleTree(force);
+        final int[] newCycles = new int[tree.size()];
+        final File[] newFiles = new File[newCycles.length];
+        int n = 0;
+        for (Map.Entry<Long, File> entry : tree.entrySet()) {
+            newCycles[n] = Math.toIntExact(entry.getKey());
+            newFiles[n++] = entry.getValue();
+        }
+        final Cycles refreshed = new Cycles(directoryModCount, newCycles, newFiles);
+        // keep the counts of cycles whose files are the ones they were counted in
+        for (int i = 0, j = 0; i < newCycles.length; i++) {
+            while (j < c.cycles.length && c.cycles[j] < newCycles[i])
+                j++;
+            if (j == c.cycles.length || c.cycles[j] != newCycles[i])
+                continue;
+            final long count = c.counts.get(j);
+            final long created = c.created.get(j);
+            if (count >= 0 && created == creationTime(newFiles[i])) {
+                refreshed.created.set(i, created);
+                refreshed.counts.set(i, count);
+            }
+        }
+        cycles = refreshed;
+        return refreshed;
+    }
+
+    @Override
+    protected void performClose() {
+        // each count uses its own tailer, so there is nothing to release
+    }
+
+    /**
+     * The cycles on disk when the directory listing was at {@link #modCount}, and the counts cached for them.
+     */
+    static final class Cycles {
+        final long modCount;
+        final int[] cycles;
+        final File[] files;
+        // the count of each cycle no longer appended to, or a negative value if it is not cached
+        final AtomicLongArray counts;
+        // when the file each count was made in was created
+        final AtomicLongArray created;
+
+        Cycles(final long modCount, final int[] cycles, final File[] files) {
+            this.modCount = modCount;
+            this.cycles = cycles;
+            this.files = files;
+            this.counts = new AtomicLongArray(cycles.length);
+            this.created = new AtomicLongArray(cycles.length);
+            for (int i = 0; i < cycles.length; i++)
+                counts.set(i, UNKNOWN);
+        }
+    }
+}
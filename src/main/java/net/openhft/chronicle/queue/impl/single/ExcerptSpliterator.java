@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.queue.ExcerptDecoder;
+import net.openhft.chronicle.queue.RollCycle;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Decodes the excerpts of a queue from {@code from} inclusive to {@code to} exclusive, in index order.
+ * <p>
+ * Until it is first advanced, {@link #trySplit()} halves the range, at the start of the cycle nearest its middle excerpt
+ * if it spans more than one, otherwise at its middle sequence number, so long as each half has at least
+ * {@code minSplitSize} excerpts. Each part reads with its own tailer, which moves to its first excerpt using the cycle's
+ * index, and is closed once the part has been read, or else by {@link #close()} or with the queue.
+ */
+final class ExcerptSpliterator<T> implements Spliterator<T> {
+    @NotNull
+    private final SingleChronicleQueue queue;
+    @NotNull
+    private final ExcerptDecoder<T> decoder;
+    private final int minSplitSize;
+    // shared by all the parts split from the same range
+    @NotNull
+    private final Tailers tailers;
+    private long from;
+    private final long to;
+    private long estimatedSize = -1;
+    private long advanced;
+    @Nullable
+    private StoreTailer tailer;
+    private boolean finished;
+
+    ExcerptSpliterator(@NotNull final SingleChronicleQueue queue,
+                       @NotNull final ExcerptDecoder<T> decoder,
+                       final int minSplitSize,
+                       final long from,
+                       final long to) {
+        this(queue, decoder, minSplitSize, new Tailers(), from, to);
+    }
+
+    private ExcerptSpliterator(@NotNull final SingleChronicleQueue queue,
+                               @NotNull final ExcerptDecoder<T> decoder,
+                               final int minSplitSize,
+                               @NotNull final Tailers tailers,
+                               final long from,
+                               final long to) {
+        this.queue = queue;
+        this.decoder = decoder;
+        this.minSplitSize = minSplitSize;
+        this.tailers = tailers;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super T> action) {
+        if (finished)
+            return false;
+        if (tailer == null && !start())
+            return finish();
+        try (DocumentContext dc = tailer.readingDocument()) {
+            if (!dc.isPresent())
+                return finish();
+            final long index = dc.index();
+            if (index >= to)
+                return finish();
+            final T value = decoder.decode(dc.wire(), index);
+            advanced++;
+            action.accept(value);
+            return true;
+        }
+    }
+
+    private boolean start() {
+        if (from >= to)
+            return false;
+        tailer = new StoreTailer(queue, queue.pool);
+        // closed by the stream, or else the queue, if it isn't read to the end
+        tailer.singleThreadedCheckDisabled(true);
+        if (!tailers.add(tailer))
+            return false;
+        if (tailer.moveToIndex(from))
+            return true;
+        // the first cycle of the range may be missing or shorter
+        final RollCycle rollCycle = queue.rollCycle();
+        for (long cycle : queue.listCyclesBetween(rollCycle.toCycle(from) + 1, rollCycle.toCycle(to - 1)))
+            if (tailer.moveToCycle((int) cycle))
+                return true;
+        return false;
+    }
+
+    private boolean finish() {
+        finished = true;
+        if (tailer != null)
+            tailers.remove(tailer);
+        Closeable.closeQuietly(tailer);
+        tailer = null;
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public Spliterator<T> trySplit() {
+        if (tailer != null || finished)
+            return null;
+        final long mid = midpoint();
+        if (mid <= from || mid >= to)
+            return null;
+        final ExcerptSpliterator<T> prefix = new ExcerptSpliterator<>(queue, decoder, minSplitSize, tailers, from, mid);
+        from = mid;
+        estimatedSize = -1;
+        return prefix;
+    }
+
+    /**
+     * @return the index to split at, or {@code from} if the range is too small to split
+     */
+    private long midpoint() {
+        if (to - from < 2)
+            return from;
+        final RollCycle rollCycle = queue.rollCycle();
+        final int fromCycle = rollCycle.toCycle(from);
+        final int toCycle = rollCycle.toCycle(to - 1);
+        final NavigableSet<Long> cycles = queue.listCyclesBetween(fromCycle, toCycle);
+        if (cycles.isEmpty())
+            return from;
+        final int[] cycleArray = new int[cycles.size()];
+        final long[] counts = new long[cycleArray.length];
+        long total = 0;
+        int n = 0;
+        for (long cycle : cycles) {
+            cycleArray[n] = (int) cycle;
+            counts[n] = Math.max(0, upperSequence((int) cycle, toCycle) - lowerSequence((int) cycle, fromCycle));
+            total += counts[n++];
+        }
+        if (total < 2L * minSplitSize)
+            return from;
+        final long half = total / 2;
+
+        // the start of the cycle nearest the middle excerpt, if that leaves enough excerpts either side
+        long before = counts[0];
+        int best = -1;
+        long bestBefore = 0;
+        for (int i = 1; i < n; i++) {
+            if (before >= minSplitSize && total - before >= minSplitSize
+                    && (best < 0 || Math.abs(before - half) < Math.abs(bestBefore - half))) {
+                best = i;
+                bestBefore = before;
+            }
+            before += counts[i];
+        }
+        if (best >= 0)
+            return rollCycle.toIndex(cycleArray[best], 0);
+
+        // otherwise the middle excerpt, within its cycle
+        before = 0;
+        for (int i = 0; i < n; i++) {
+            if (before + counts[i] > half)
+                return rollCycle.toIndex(cycleArray[i], lowerSequence(cycleArray[i], fromCycle) + half - before);
+            before += counts[i];
+        }
+        return from;
+    }
+
+    private long lowerSequence(final int cycle, final int fromCycle) {
+        return cycle == fromCycle ? queue.rollCycle().toSequenceNumber(from) : 0;
+    }
+
+    private long upperSequence(final int cycle, final int toCycle) {
+        final long count = queue.excerptCounter().excerptsInCycle(cycle);
+        return cycle == toCycle ? Math.min(count, queue.rollCycle().toSequenceNumber(to - 1) + 1) : count;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (estimatedSize < 0)
+            estimatedSize = countExcerpts();
+        return Math.max(0, estimatedSize - advanced);
+    }
+
+    private long countExcerpts() {
+        if (from >= to)
+            return 0;
+        final RollCycle rollCycle = queue.rollCycle();
+        final int fromCycle = rollCycle.toCycle(from);
+        final int toCycle = rollCycle.toCycle(to - 1);
+        long count = 0;
+        try {
+            for (long cycle : queue.listCyclesBetween(fromCycle, toCycle))
+                count += Math.max(0, upperSequence((int) cycle, toCycle) - lowerSequence((int) cycle, fromCycle));
+        } catch (IllegalStateException e) {
+            // a cycle was removed while counting
+            return Long.MAX_VALUE;
+        }
+        return count;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED;
+    }
+
+    /**
+     * Closes the tailers of every part split from the same range which haven't been read to the end, and stops any part
+     * from starting another.
+     */
+    void close() {
+        tailers.close();
+    }
+
+    /**
+     * @return the number of tailers open for the parts of the range
+     */
+    int openTailers() {
+        return tailers.size();
+    }
+
+    /**
+     * The tailers open for the parts of a range.
+     */
+    static final class Tailers {
+        private final Set<StoreTailer> open = new HashSet<>();
+        private boolean closed;
+
+        synchronized boolean add(final StoreTailer tailer) {
+            if (closed) {
+                tailer.close();
+                return false;
+            }
+            open.add(tailer);
+            return true;
+        }
+
+        synchronized void remove(final StoreTailer tailer) {
+            open.remove(tailer);
+        }
+
+        synchronized int size() {
+            return open.size();
+        }
+
+        synchronized void close() {
+            closed = true;
+            Closeable.closeQuietly(open);
+            open.clear();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.MappedBytesStore;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import net.openhft.chronicle.core.io.ClosedIllegalStateException;
+import net.openhft.chronicle.core.threads.InterruptedRuntimeException;
+import net.openhft.chronicle.threads.NamedThreadFactory;
+import net.openhft.chronicle.wire.UnrecoverableTimeoutException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Makes appends durable with group commit. Appenders register the store and position they need durable and wait, while a
+ * single background thread issues one msync per store over everything registered so far and then wakes every waiter it
+ * covers.
+ * <p>
+ * Each round of syncing covers every position registered before it started, whatever the order of their indices, as
+ * appenders on either side of a chunk or cycle boundary may register in any order. If a round fails, only its waiters are
+ * told, and what it didn't sync is carried into the next round, so an index is only acknowledged as msync-ed once
+ * everything before it has been. Two rounds are used in turn, one filling while the other syncs.
+ */
+class GroupCommitSyncer extends AbstractCloseable implements Runnable {
+    @NotNull
+    private final SingleChronicleQueue queue;
+    private final Thread thread;
+
+    // guarded by this
+    private Round filling = new Round();
+    private Round syncing = new Round();
+
+    GroupCommitSyncer(@NotNull final SingleChronicleQueue queue) {
+        this.queue = queue;
+        // appenders register from many threads
+        singleThreadedCheckDisabled(true);
+        thread = new NamedThreadFactory("~group-commit~" + queue.fileAbsolutePath(), true).newThread(this);
+        thread.start();
+    }
+
+    /**
+     * Waits until everything up to {@code position} in {@code store}, which holds the excerpt at {@code index}, is durable.
+     */
+    void sync(@NotNull final MappedBytesStore store, final long position, final long index) {
+        throwExceptionIfClosed();
+        final long timeoutMS = queue.timeoutMS;
+        final long end = System.currentTimeMillis() + timeoutMS;
+        synchronized (this) {
+            final Round round = filling;
+            if (!round.add(store, position, this))
+                throw new ClosedIllegalStateException("Index " + Long.toHexString(index) + " can't be synced as its store has been released");
+            round.index = Math.max(round.index, index);
+            round.waiters++;
+            notifyAll();
+            try {
+                while (!round.done) {
+                    if (isClosing())
+                        throw new ClosedIllegalStateException("Closed while waiting for index " + Long.toHexString(index) + " to be synced");
+                    final long remaining = end - System.currentTimeMillis();
+                    if (remaining <= 0)
+                        throw new UnrecoverableTimeoutException(new IllegalStateException("Index " + Long.toHexString(index) + " was not synced after " + timeoutMS + " ms"));
+                    wait(remaining);
+                }
+                if (round.failure != null)
+                    throw round.failure;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedRuntimeException(e);
+            } finally {
+                // the round can be reused once all its waiters have gone
+                if (--round.waiters == 0)
+                    notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Makes everything up to {@code position} in {@code store} durable.
+     */
+    void syncUpTo(@NotNull final MappedBytesStore store, final long position) {
+        store.syncUpTo(position);
+    }
+
+    @Override
+    public void run() {
+        while (!isClosing()) {
+            final Round round;
+            synchronized (this) {
+                try {
+                    // what a failed round carried over is retried when there is someone waiting for it
+                    while (filling.waiters == 0 && !isClosing())
+                        wait(100);
+                    // the waiters of the last round must see how it went before it is filled again
+                    while (syncing.waiters > 0 && !isClosing())
+                        wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (isClosing())
+                    return;
+                round = filling;
+                syncing.reset();
+                filling = syncing;
+                syncing = round;
+            }
+
+            // only this thread uses the positions of a round once it has stopped filling
+            RuntimeException failure = null;
+            for (Map.Entry<MappedBytesStore, Long> entry : round.positions.entrySet()) {
+                final MappedBytesStore store = entry.getKey();
+                try {
+                    syncUpTo(store, entry.getValue());
+                } catch (RuntimeException e) {
+                    failure = e;
+                    break;
+                }
+            }
+            if (failure == null) {
+                round.release(this);
+                queue.lastIndexMSynced(round.index);
+            } else {
+                Jvm.warn().on(getClass(), "Failed to sync up to index " + Long.toHexString(round.index), failure);
+            }
+
+            synchronized (this) {
+                if (failure != null)
+                    // retried with the next round, keeping the stores reserved
+                    filling.carry(round, this);
+                round.failure = failure;
+                round.done = true;
+                notifyAll();
+            }
+        }
+    }
+
+    @Override
+    protected void performClose() {
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            thread.join(queue.timeoutMS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            filling.release(this);
+            syncing.release(this);
+        }
+    }
+
+    /**
+     * The positions to sync in one round, and how it went.
+     */
+    static final class Round {
+        // the highest position to sync in each store, each reserved by the syncer until synced
+        final Map<MappedBytesStore, Long> positions = new IdentityHashMap<>();
+        long index = Long.MIN_VALUE;
+        int waiters;
+        boolean done;
+        RuntimeException failure;
+
+        /**
+         * @return false if {@code store} has been released
+         */
+        boolean add(final MappedBytesStore store, final long position, final GroupCommitSyncer owner) {
+            final Long pendingPosition = positions.get(store);
+            if (pendingPosition == null) {
+                if (!store.tryReserve(owner))
+                    return false;
+                positions.put(store, position);
+            } else if (position > pendingPosition) {
+                positions.put(store, position);
+            }
+            return true;
+        }
+
+        /**
+         * Takes over the positions of a round which failed, and their reservations.
+         */
+        void carry(final Round failed, final GroupCommitSyncer owner) {
+            for (Map.Entry<MappedBytesStore, Long> entry : failed.positions.entrySet()) {
+                final MappedBytesStore store = entry.getKey();
+                final Long pendingPosition = positions.get(store);
+                if (pendingPosition == null) {
+                    positions.put(store, entry.getValue());
+                } else {
+                    positions.put(store, Math.max(pendingPosition, entry.getValue()));
+                    store.release(owner);
+                }
+            }
+            failed.positions.clear();
+            index = Math.max(index, failed.index);
+        }
+
+        void release(final GroupCommitSyncer owner) {
+            for (MappedBytesStore store : positions.keySet())
+                store.release(owner);
+            positions.clear();
+        }
+
+        void reset() {
+            positions.clear();
+            index = Long.MIN_VALUE;
+            done = false;
+            failure = null;
+        }
+    }
+}
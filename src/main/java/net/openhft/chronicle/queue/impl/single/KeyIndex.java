@@ -0,0 +1,589 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.MappedBytes;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.core.threads.EventHandler;
+import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.KeyExtractor;
+import net.openhft.chronicle.queue.RollCycle;
+import net.openhft.chronicle.wire.DocumentContext;
+import net.openhft.chronicle.wire.Wire;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes excerpts by a user defined key for {@link SingleChronicleQueue#indexForKey(long)}.
+ * <p>
+ * Each cycle has an open addressing hash table from key to sequence number, in a memory mapped file named after the cycle
+ * file with a {@value #SUFFIX} suffix. It is populated by a tailer on the queue's event loop rather than by appenders, so
+ * appends are not slowed down. The table records how far the cycle has been indexed, and lookups scan the excerpts after
+ * that, so a table which is behind, missing or invalid only makes lookups slower. Such a table is rebuilt from the cycle
+ * file when the indexer starts. Lookups probe the tables through mappings kept open per cycle, and only scan the cycle file
+ * of a table which isn't complete.
+ * <p>
+ * The table also records the lowest and highest key in its cycle, and is marked complete once the indexer has moved on to
+ * a later cycle, so {@link BinarySearch#searchByKey} can rule cycles out without mapping their files.
+ * <p>
+ * A file is only ever appended to, so it can stay mapped by other processes. When the table fills up, a table of twice the
+ * capacity is written after the current one and the header is pointed at it; readers of the old table see all it held.
+ * A cycle's table is removed when its cycle file is created, and tables whose cycle file has been deleted are removed when
+ * the queue is opened and, in the background, as it rolls.
+ */
+final class KeyIndex extends AbstractCloseable implements EventHandler {
+    static final String SUFFIX = ".keys";
+    static final int MAX_BATCH = 256;
+
+    // the header of a table file
+    static final long MAGIC = 0x335359454BL; // KEYS3
+    static final int MAGIC_OFFSET = 0;
+    static final int TABLE_OFFSET = 8;
+    static final int SIZE_OFFSET = 16;
+    static final int INDEXED_UP_TO_OFFSET = 24;
+    static final int MIN_KEY_OFFSET = 32;
+    static final int MAX_KEY_OFFSET = 40;
+    static final int COMPLETE_OFFSET = 48;
+    static final int HEADER_SIZE = 64;
+    // a table is its capacity, padded to an entry, followed by its entries
+    static final int CAPACITY_OFFSET = 0;
+    static final int ENTRIES_OFFSET = 16;
+    // each entry is the key followed by the sequence number + 1, which is 0 for an empty slot
+    static final int ENTRY_SIZE = 16;
+    static final long INITIAL_CAPACITY = 1 << 16;
+    private static final long CHUNK_SIZE = 1 << 20;
+    private static final long OVERLAP_SIZE = OS.pageSize();
+
+    @NotNull
+    private final SingleChronicleQueue queue;
+    @NotNull
+    private final KeyExtractor keyExtractor;
+    // used on the event loop only
+    private ExcerptTailer tailer;
+    private Table table;
+    // the tables mapped for lookups, by cycle
+    private final Map<Integer, Reader> readers = new ConcurrentHashMap<>();
+
+    KeyIndex(@NotNull final SingleChronicleQueue queue, @NotNull final KeyExtractor keyExtractor) {
+        this.queue = queue;
+        this.keyExtractor = keyExtractor;
+        // lookups are made from any thread
+        singleThreadedCheckDisabled(true);
+    }
+
+    @NotNull
+    static File fileFor(@NotNull final File cycleFile) {
+        return new File(cycleFile.getParentFile(), cycleFile.getName() + SUFFIX);
+    }
+
+    /**
+     * Removes the table of a cycle file which has just been created, as it was written for an earlier file of the cycle.
+     */
+    void onCycleFileCreated(final int cycle) {
+        Closeable.closeQuietly(readers.remove(cycle));
+        deleteQuietly(fileFor(queue.cycleFile(cycle)));
+    }
+
+    /**
+     * Removes the tables in {@code dir} whose cycle files no longer exist.
+     */
+    static void removeOrphans(@NotNull final File dir) {
+        final File[] orphans = dir.listFiles((d, name) ->
+                name.endsWith(SingleChronicleQueue.SUFFIX + SUFFIX)
+                        && !new File(d, name.substring(0, name.length() - SUFFIX.length())).exists());
+        if (orphans != null)
+            for (File orphan : orphans)
+                deleteQuietly(orphan);
+    }
+
+    private static void deleteQuietly(final File file) {
+        if (file.exists() && !file.delete() && file.exists())
+            Jvm.warn().on(KeyIndex.class, "Unable to delete " + file);
+    }
+
+    static long hash(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    long keyOf(@NotNull final Wire wire) {
+        return keyExtractor.keyOf(wire);
+    }
+
+    /**
+     * @return the index of the latest excerpt with {@code key}, or -1 if there is none
+     */
+    long indexForKey(final long key) {
+        throwExceptionIfClosed();
+        final RollCycle rollCycle = queue.rollCycle();
+        final NavigableMap<Long, File> tree = queue.cycleTree(false);
+        if (readers.size() > tree.size())
+            closeReaders(tree);
+        ExcerptTailer scanner = null;
+        try {
+            for (Long c : tree.descendingKeySet()) {
+                final int cycle = Math.toIntExact(c);
+                long sequence = -1;
+                long indexedUpTo = 0;
+                boolean complete = false;
+                final Reader reader = readerFor(cycle);
+                if (reader != null) {
+                    synchronized (reader) {
+                        if (reader.isValid()) {
+                            // read before the table, so everything up to it is in the table
+                            complete = reader.isComplete();
+                            indexedUpTo = reader.indexedUpTo();
+                            sequence = reader.lookup(key);
+                        }
+                    }
+                }
+                // excerpts not indexed yet are later than those which are, and a complete table holds its whole cycle
+                if (!complete) {
+                    if (scanner == null)
+                        scanner = queue.createTailer();
+                    final long scanned = scan(scanner, cycle, indexedUpTo, key);
+                    if (scanned != -1)
+                        return scanned;
+                }
+                if (sequence != -1)
+                    return rollCycle.toIndex(cycle, sequence);
+            }
+        } finally {
+            Closeable.closeQuietly(scanner);
+        }
+        return -1;
+    }
+
+    /**
+     * @return the mapping of the table of {@code cycle}, opening it if need be, or null if there is no table to map
+     */
+    @Nullable
+    private Reader readerFor(final int cycle) {
+        final Reader reader = readers.get(cycle);
+        if (reader != null)
+            return reader;
+        final File file = fileFor(queue.cycleFile(cycle));
+        if (file.length() < HEADER_SIZE)
+            return null;
+        final Reader opened;
+        try {
+            opened = new Reader(file);
+        } catch (IOException e) {
+            Jvm.debug().on(getClass(), "Unable to map " + file + ", lookups will scan its cycle", e);
+            return null;
+        }
+        final Reader existing = readers.putIfAbsent(cycle, opened);
+        if (existing != null) {
+            opened.close();
+            return existing;
+        }
+        if (isClosing())
+            closeReaders(Collections.emptyNavigableMap());
+        return opened;
+    }
+
+    /**
+     * Closes the mappings of tables whose cycle isn't in {@code tree}.
+     */
+    private void closeReaders(final NavigableMap<Long, File> tree) {
+        for (Iterator<Map.Entry<Integer, Reader>> it = readers.entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<Integer, Reader> entry = it.next();
+            if (!tree.containsKey((long) entry.getKey())) {
+                it.remove();
+                entry.getValue().close();
+            }
+        }
+    }
+
+    private long scan(final ExcerptTailer scanner, final int cycle, final long fromSequence, final long key) {
+        final RollCycle rollCycle = queue.rollCycle();
+        if (!scanner.moveToIndex(rollCycle.toIndex(cycle, fromSequence)))
+            return -1;
+        long found = -1;
+        while (true) {
+            try (DocumentContext dc = scanner.readingDocument()) {
+                if (!dc.isPresent())
+                    break;
+                if (rollCycle.toCycle(dc.index()) != cycle) {
+                    dc.rollbackOnClose();
+                    break;
+                }
+                if (keyExtractor.keyOf(dc.wire()) == key)
+                    found = dc.index();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Reads the header of a table into {@code buffer}.
+     *
+     * @return false if the table is not valid
+     */
+    static boolean readHeader(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        if (!read(channel, 0, HEADER_SIZE, buffer))
+            return false;
+        return buffer.getLong(MAGIC_OFFSET) == MAGIC && buffer.getLong(TABLE_OFFSET) >= HEADER_SIZE;
+    }
+
+    private static boolean read(final FileChannel channel, final long position, final int length, final ByteBuffer buffer) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the lowest and highest key in {@code cycle}, the lowest being greater if the cycle has no keys, or null if
+     * its table is missing, not valid or its cycle may still be appended to
+     */
+    @Nullable
+    long[] keyRange(final int cycle) {
+        final Reader reader = readerFor(cycle);
+        if (reader == null)
+            return null;
+        synchronized (reader) {
+            if (!reader.isValid() || !reader.isComplete())
+                return null;
+            return new long[]{reader.minKey(), reader.maxKey()};
+        }
+    }
+
+    /**
+     * @return how far the table in {@code file} has indexed its cycle, or -1 if it is missing or not valid
+     */
+    static long indexedUpTo(final File file) throws IOException {
+        if (!file.exists())
+            return -1;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+            return readHeader(raf.getChannel(), buffer) ? buffer.getLong(INDEXED_UP_TO_OFFSET) : -1;
+        }
+    }
+
+    @Override
+    public boolean action() throws InvalidEventHandlerException {
+        if (isClosing() || queue.isClosing()) {
+            releaseAll();
+            throw InvalidEventHandlerException.reusable();
+        }
+        try {
+            if (tailer == null) {
+                tailer = queue.createTailer();
+                resume();
+            }
+            final RollCycle rollCycle = queue.rollCycle();
+            int count = 0;
+            for (; count < MAX_BATCH; count++) {
+                try (DocumentContext dc = tailer.readingDocument()) {
+                    if (!dc.isPresent())
+                        break;
+                    final long index = dc.index();
+                    final int cycle = rollCycle.toCycle(index);
+                    if (table == null || table.cycle != cycle) {
+                        // nothing more can be appended to an earlier cycle
+                        if (table != null && table.cycle < cycle)
+                            table.complete();
+                        Closeable.closeQuietly(table);
+                        table = null;
+                        // the table may be rebuilt in a new file
+                        Closeable.closeQuietly(readers.remove(cycle));
+                        table = Table.open(fileFor(queue.cycleFile(cycle)), cycle);
+                    }
+                    final long sequence = rollCycle.toSequenceNumber(index);
+                    final long key = keyExtractor.keyOf(dc.wire());
+                    if (key != KeyExtractor.NO_KEY)
+                        table.put(key, sequence);
+                    table.indexedUpTo(sequence + 1);
+                }
+            }
+            return count > 0;
+        } catch (IOException e) {
+            Jvm.warn().on(getClass(), "Unable to index keys, lookups will scan the queue", e);
+            releaseAll();
+            throw InvalidEventHandlerException.reusable();
+        }
+    }
+
+    /**
+     * Moves the indexer to the first excerpt which hasn't been indexed, rebuilding any table which is missing or invalid.
+     */
+    private void resume() throws IOException {
+        final RollCycle rollCycle = queue.rollCycle();
+        final NavigableMap<Long, File> tree = queue.cycleTree(false);
+        final Long lastCycle = tree.isEmpty() ? null : tree.lastKey();
+        for (Long c : tree.keySet()) {
+            final int cycle = Math.toIntExact(c);
+            final long indexedUpTo = indexedUpTo(fileFor(queue.cycleFile(cycle)));
+            if (indexedUpTo < 0) {
+                if (tailer.moveToCycle(cycle))
+                    return;
+                continue;
+            }
+            if (!c.equals(lastCycle) && indexedUpTo >= tailer.exactExcerptsInCycle(cycle))
+                continue;
+            // re-indexing the last excerpt indexed does no harm, and it always exists
+            if (indexedUpTo == 0 ? tailer.moveToCycle(cycle) : tailer.moveToIndex(rollCycle.toIndex(cycle, indexedUpTo - 1)))
+                return;
+        }
+        tailer.toStart();
+    }
+
+    @Override
+    public void loopFinished() {
+        releaseAll();
+    }
+
+    private void releaseAll() {
+        Closeable.closeQuietly(table, tailer);
+        table = null;
+        tailer = null;
+    }
+
+    @Override
+    protected void performClose() {
+        // the tailer and table are released on the event loop, as it may be using them
+        closeReaders(Collections.emptyNavigableMap());
+    }
+
+    /**
+     * A read only mapping of the table of one cycle, kept open for lookups from any thread. Callers hold its lock.
+     */
+    static final class Reader implements Closeable {
+        @NotNull
+        private final MappedBytes bytes;
+        private boolean closed;
+
+        Reader(@NotNull final File file) throws IOException {
+            // mapped in the same chunks as the indexer, so only parts of the file it has mapped are mapped
+            bytes = MappedBytes.mappedBytes(file, CHUNK_SIZE, OVERLAP_SIZE, !OS.isWindows());
+            bytes.singleThreadedCheckDisabled(true);
+            bytes.readLimitToCapacity();
+        }
+
+        boolean isValid() {
+            return !closed
+                    && bytes.readVolatileLong(MAGIC_OFFSET) == MAGIC
+                    && bytes.readVolatileLong(TABLE_OFFSET) >= HEADER_SIZE;
+        }
+
+        boolean isComplete() {
+            return bytes.readVolatileLong(COMPLETE_OFFSET) != 0;
+        }
+
+        long indexedUpTo() {
+            return bytes.readVolatileLong(INDEXED_UP_TO_OFFSET);
+        }
+
+        long minKey() {
+            return bytes.readVolatileLong(MIN_KEY_OFFSET);
+        }
+
+        long maxKey() {
+            return bytes.readVolatileLong(MAX_KEY_OFFSET);
+        }
+
+        /**
+         * @return the sequence number of {@code key}, or -1 if the table doesn't hold it
+         */
+        long lookup(final long key) {
+            final long tableOffset = bytes.readVolatileLong(TABLE_OFFSET);
+            final long capacity = bytes.readLong(tableOffset + CAPACITY_OFFSET);
+            if (capacity <= 0 || Long.bitCount(capacity) != 1)
+                return -1;
+            final long mask = capacity - 1;
+            for (long n = 0, i = hash(key) & mask; n < capacity; n++, i = (i + 1) & mask) {
+                final long offset = tableOffset + ENTRIES_OFFSET + i * ENTRY_SIZE;
+                final long value = bytes.readVolatileLong(offset + 8);
+                if (value == 0)
+                    return -1;
+                if (bytes.readLong(offset) == key)
+                    return value - 1;
+            }
+            return -1;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed)
+                return;
+            closed = true;
+            bytes.releaseLast();
+        }
+
+        @Override
+        public synchronized boolean isClosed() {
+            return closed;
+        }
+    }
+
+    /**
+     * The table of one cycle, as written by the indexer.
+     */
+    static final class Table implements Closeable {
+        final int cycle;
+        @NotNull
+        private final File file;
+        private MappedBytes bytes;
+        private long tableOffset;
+        private long capacity;
+        private long size;
+        private long minKey;
+        private long maxKey;
+        private boolean closed;
+
+        private Table(@NotNull final File file, final int cycle) {
+            this.file = file;
+            this.cycle = cycle;
+        }
+
+        @NotNull
+        static Table open(@NotNull final File file, final int cycle) throws IOException {
+            final Table table = new Table(file, cycle);
+            final boolean valid = indexedUpTo(file) >= 0;
+            final long length = file.length();
+            table.bytes = MappedBytes.mappedBytes(file, CHUNK_SIZE, OVERLAP_SIZE);
+            table.bytes.singleThreadedCheckDisabled(true);
+            table.bytes.readLimitToCapacity();
+            if (valid)
+                table.load();
+            else
+                table.init(length);
+            return table;
+        }
+
+        private void load() {
+            tableOffset = bytes.readVolatileLong(TABLE_OFFSET);
+            capacity = bytes.readLong(tableOffset + CAPACITY_OFFSET);
+            size = bytes.readLong(SIZE_OFFSET);
+            minKey = bytes.readLong(MIN_KEY_OFFSET);
+            maxKey = bytes.readLong(MAX_KEY_OFFSET);
+        }
+
+        /**
+         * Starts an empty table in a file which is missing or not valid. The table is written after anything already in the
+         * file, so it starts out empty, and the header is marked valid last so readers never see it half written.
+         */
+        private void init(final long length) {
+            bytes.writeOrderedLong(MAGIC_OFFSET, 0);
+            bytes.writeLong(SIZE_OFFSET, size = 0);
+            bytes.writeLong(INDEXED_UP_TO_OFFSET, 0);
+            bytes.writeLong(MIN_KEY_OFFSET, minKey = Long.MAX_VALUE);
+            bytes.writeLong(MAX_KEY_OFFSET, maxKey = Long.MIN_VALUE);
+            bytes.writeLong(COMPLETE_OFFSET, 0);
+            tableOffset = align(Math.max(HEADER_SIZE, length));
+            bytes.writeLong(tableOffset + CAPACITY_OFFSET, capacity = INITIAL_CAPACITY);
+            bytes.writeLong(TABLE_OFFSET, tableOffset);
+            // written last as it marks the table as valid
+            bytes.writeOrderedLong(MAGIC_OFFSET, MAGIC);
+        }
+
+        private static long align(final long offset) {
+            return (offset + HEADER_SIZE - 1) & -HEADER_SIZE;
+        }
+
+        /**
+         * Rehashes the entries into a table of twice the capacity written after the current one, which is left as it is
+         * for readers still using it.
+         */
+        private void grow() {
+            final long newOffset = align(tableOffset + ENTRIES_OFFSET + capacity * ENTRY_SIZE);
+            final long newCapacity = capacity * 2;
+            bytes.writeLong(newOffset + CAPACITY_OFFSET, newCapacity);
+            long newSize = 0;
+            for (long i = 0; i < capacity; i++) {
+                final long offset = tableOffset + ENTRIES_OFFSET + i * ENTRY_SIZE;
+                final long value = bytes.readLong(offset + 8);
+                if (value != 0 && insert(bytes, newOffset, newCapacity, bytes.readLong(offset), value))
+                    newSize++;
+            }
+            bytes.writeOrderedLong(SIZE_OFFSET, size = newSize);
+            // readers move to the new table once it is complete
+            bytes.writeOrderedLong(TABLE_OFFSET, tableOffset = newOffset);
+            capacity = newCapacity;
+        }
+
+        private static boolean insert(final MappedBytes bytes, final long tableOffset, final long capacity, final long key, final long value) {
+            final long mask = capacity - 1;
+            for (long i = hash(key) & mask; ; i = (i + 1) & mask) {
+                final long offset = tableOffset + ENTRIES_OFFSET + i * ENTRY_SIZE;
+                if (bytes.readVolatileLong(offset + 8) == 0) {
+                    bytes.writeLong(offset, key);
+                    bytes.writeOrderedLong(offset + 8, value);
+                    return true;
+                }
+                if (bytes.readLong(offset) == key) {
+                    bytes.writeOrderedLong(offset + 8, value);
+                    return false;
+                }
+            }
+        }
+
+        void put(final long key, final long sequence) {
+            // keep the load factor below 3/4 so probes stay short
+            if ((size + 1) * 4 > capacity * 3)
+                grow();
+            if (insert(bytes, tableOffset, capacity, key, sequence + 1))
+                bytes.writeOrderedLong(SIZE_OFFSET, ++size);
+            if (key < minKey)
+                bytes.writeOrderedLong(MIN_KEY_OFFSET, minKey = key);
+            if (key > maxKey)
+                bytes.writeOrderedLong(MAX_KEY_OFFSET, maxKey = key);
+        }
+
+        void indexedUpTo(final long sequence) {
+            bytes.writeOrderedLong(INDEXED_UP_TO_OFFSET, sequence);
+        }
+
+        void complete() {
+            bytes.writeOrderedLong(COMPLETE_OFFSET, 1);
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            Closeable.closeQuietly(bytes);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+}
@@ -20,15 +20,46 @@ package net.openhft.chronicle.queue.impl.single;
 
 import net.openhft.chronicle.bytes.Bytes;
 import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.MappedBytes;
+import net.openhft.chronicle.bytes.MappedFile;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.Closeable;
 import net.openhft.chronicle.wire.Wire;
 import net.openhft.posix.MSyncFlag;
 import net.openhft.posix.PosixAPI;
 
-public class MicroToucher {
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Touches the next page ahead of the appender and msyncs what it has written in the background.
+ * <p>
+ * Besides syncing in 8 MB chunks, {@link #bgExecute()} makes the last excerpt appended durable at most every
+ * {@code chronicle.queue.durableSyncIntervalUs}, advancing {@link SingleChronicleQueue#lastIndexMSynced(long)} so waiters on
+ * {@link SingleChronicleQueue#whenMSynced(long)} are completed. An index is only acknowledged once every byte written
+ * before it has been synced with MS_SYNC, whatever the syncMode: the rest of each cycle file the appender has rolled from,
+ * and every chunk of the current one up to the excerpt.
+ */
+public class MicroToucher implements Closeable {
+    private static final long DURABLE_SYNC_INTERVAL_NS = Jvm.getInteger("chronicle.queue.durableSyncIntervalUs", 1_000) * 1_000L;
+
     private final StoreAppender appender;
     private long lastPageTouched = 0;
     private volatile long lastPageToSync = 0;
     private long lastPageSynced = 0;
+    // published by the appending thread, odd while the position, index and cycle are being changed
+    private volatile long version = 0;
+    private long positionToSync = 0;
+    private long indexToSync = Long.MIN_VALUE;
+    private int cycleToSync = Integer.MIN_VALUE;
+    // the cycle files written to, in order, each mapped until the background thread has synced all of it
+    private final Queue<CycleFile> cycleFiles = new ConcurrentLinkedQueue<>();
+    private MappedFile lastFilePublished;
+    // used by the background thread, holding the lock on this
+    private long positionSynced;
+    private long indexSynced = Long.MIN_VALUE;
+    private long lastDurableSyncNS;
+    private boolean closed;
 
     public MicroToucher(StoreAppender appender) {
         this.appender = appender;
@@ -40,9 +71,13 @@ public class MicroToucher {
             return false;
 
         final long lastPosition = appender.lastPosition;
+        final long lastIndex = appender.lastIndex();
+        Bytes<?> bytes = bufferWire.bytes();
+        if (lastIndex != indexToSync && lastIndex != Long.MIN_VALUE)
+            publish(bytes, lastIndex);
+
         final long lastPage = lastPosition & ~0xFFF;
         final long nextPage = (lastPosition + 0xFFF) & ~0xFFF;
-        Bytes<?> bytes = bufferWire.bytes();
         if (nextPage != lastPageTouched) {
             lastPageTouched = nextPage;
             try {
@@ -59,7 +94,34 @@ public class MicroToucher {
         return false;
     }
 
+    /**
+     * Publishes the end of the last excerpt for the background thread to make durable, as this is called between writes.
+     */
+    private void publish(final Bytes<?> bytes, final long lastIndex) {
+        final int cycle = appender.queue().rollCycle().toCycle(lastIndex);
+        // the wire has rolled on without an excerpt being written yet
+        if (cycle != appender.cycle() || !(bytes instanceof MappedBytes))
+            return;
+        final MappedFile file = ((MappedBytes) bytes).mappedFile();
+        if (file != lastFilePublished) {
+            final MappedBytes syncBytes = MappedBytes.mappedBytes(file);
+            syncBytes.singleThreadedCheckDisabled(true);
+            cycleFiles.add(new CycleFile(cycle, syncBytes));
+            lastFilePublished = file;
+        }
+        version++;
+        positionToSync = bytes.writePosition();
+        indexToSync = lastIndex;
+        cycleToSync = cycle;
+        version++;
+    }
+
     public void bgExecute() {
+        syncChunk();
+        syncDurable();
+    }
+
+    private void syncChunk() {
         final long lastPage = this.lastPageToSync;
         final long start = this.lastPageSynced;
         final long length = Math.min(8 << 20, lastPage - start);
@@ -76,6 +138,67 @@ public class MicroToucher {
         this.lastPageSynced += length;
     }
 
+    private synchronized void syncDurable() {
+        if (closed)
+            return;
+        final long version0 = this.version;
+        final long position = positionToSync;
+        final long index = indexToSync;
+        final int cycle = cycleToSync;
+        // try again next time if it is being published
+        if ((version0 & 1) != 0 || version0 != this.version)
+            return;
+        if (index == indexSynced || index == Long.MIN_VALUE)
+            return;
+        final long now = System.nanoTime();
+        if (now - lastDurableSyncNS < DURABLE_SYNC_INTERVAL_NS)
+            return;
+
+        try {
+            // finish the cycle files rolled from
+            CycleFile cycleFile;
+            while ((cycleFile = cycleFiles.peek()) != null && cycleFile.cycle < cycle) {
+                syncRange(cycleFile.bytes, positionSynced, cycleFile.bytes.mappedFile().actualSize());
+                cycleFiles.remove();
+                cycleFile.bytes.releaseLast();
+                positionSynced = 0;
+            }
+            if (cycleFile == null || cycleFile.cycle != cycle)
+                return;
+            syncRange(cycleFile.bytes, positionSynced, position);
+        } catch (RuntimeException e) {
+            // nothing is acknowledged, and the sync is tried again next time
+            Jvm.warn().on(getClass(), "Unable to sync up to index " + Long.toHexString(index), e);
+            return;
+        }
+        lastDurableSyncNS = now;
+        positionSynced = position;
+        indexSynced = index;
+        appender.queue().lastIndexMSynced(index);
+    }
+
+    /**
+     * Syncs {@code from} inclusive to {@code to} exclusive of a cycle file with MS_SYNC, a chunk at a time.
+     */
+    private void syncRange(final MappedBytes bytes, final long from, final long to) {
+        final long chunkSize = bytes.mappedFile().chunkSize();
+        long start = from & ~0xFFF;
+        while (start < to) {
+            final long end = Math.min(to, (start / chunkSize + 1) * chunkSize);
+            // maps the chunk holding start
+            bytes.readVolatileByte(start);
+            final BytesStore store = bytes.bytesStore();
+            if (!store.inside(start, end - start))
+                throw new IllegalStateException("Unable to map " + start + " to " + end + " of " + bytes.mappedFile().file());
+            msync(store, start, end - start);
+            start = end;
+        }
+    }
+
+    protected void msync(BytesStore store, long start, long length) {
+        PosixAPI.posix().msync(store.addressForRead(start), length, MSyncFlag.MS_SYNC);
+    }
+
     private void sync(BytesStore bytes, long start, long length) {
         if (!bytes.inside(start, length))
             return;
@@ -87,4 +210,32 @@ public class MicroToucher {
     protected boolean touchPage(long nextPage, BytesStore bs) {
         return bs.compareAndSwapLong(nextPage, 0, 0);
     }
+
+    /**
+     * Releases the cycle files still to be synced, called when the appender is closed.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        CycleFile cycleFile;
+        while ((cycleFile = cycleFiles.poll()) != null)
+            cycleFile.bytes.releaseLast();
+    }
+
+    @Override
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    static final class CycleFile {
+        final int cycle;
+        final MappedBytes bytes;
+
+        CycleFile(int cycle, MappedBytes bytes) {
+            this.cycle = cycle;
+            this.bytes = bytes;
+        }
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.io.ClosedIllegalStateException;
+import net.openhft.chronicle.queue.ExcerptDecoder;
+import net.openhft.chronicle.queue.RollCycle;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Replays a range of a queue on a {@link ForkJoinPool}. The range is split into chunks of at most {@code chunkSize}
+ * excerpts within a cycle, and each chunk is read by its own tailer, which moves to its start using the cycle's index.
+ * <p>
+ * Unordered, each excerpt is passed to the handler on the thread which decoded it. Ordered, chunks are decoded ahead
+ * of the caller, at most two per thread, and the caller passes their excerpts to the handler in index order.
+ */
+final class ParallelReplay<T> {
+    @NotNull
+    private final SingleChronicleQueue queue;
+    private final int chunkSize;
+    @NotNull
+    private final ExcerptDecoder<T> decoder;
+    @NotNull
+    private final ObjLongConsumer<? super T> handler;
+
+    ParallelReplay(@NotNull final SingleChronicleQueue queue,
+                   final int chunkSize,
+                   @NotNull final ExcerptDecoder<T> decoder,
+                   @NotNull final ObjLongConsumer<? super T> handler) {
+        this.queue = queue;
+        this.chunkSize = chunkSize;
+        this.decoder = decoder;
+        this.handler = handler;
+    }
+
+    /**
+     * @return the number of excerpts replayed from {@code fromIndex} inclusive to {@code toIndex} exclusive
+     */
+    long replay(final long fromIndex, final long toIndex, final int parallelism, final boolean ordered) {
+        final long[] chunks = chunks(fromIndex, toIndex);
+        if (chunks.length == 0)
+            return 0;
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return ordered
+                    ? replayOrdered(pool, chunks, parallelism * 2)
+                    : replayUnordered(pool, chunks);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private long replayUnordered(final ForkJoinPool pool, final long[] chunks) {
+        final List<ForkJoinTask<Chunk<T>>> tasks = new ArrayList<>(chunks.length / 2);
+        for (int i = 0; i < chunks.length; i += 2) {
+            final long from = chunks[i];
+            final long to = chunks[i + 1];
+            tasks.add(pool.submit(() -> read(from, to, null)));
+        }
+        long count = 0;
+        for (ForkJoinTask<Chunk<T>> task : tasks)
+            count += task.join().count;
+        return count;
+    }
+
+    private long replayOrdered(final ForkJoinPool pool, final long[] chunks, final int window) {
+        final int n = chunks.length / 2;
+        final List<ForkJoinTask<Chunk<T>>> tasks = new ArrayList<>(n);
+        long count = 0;
+        for (int i = 0; i < n; i++) {
+            // keep up to window chunks decoding ahead of the one being handled
+            for (int j = tasks.size(); j < Math.min(n, i + window); j++) {
+                final long from = chunks[2 * j];
+                final long to = chunks[2 * j + 1];
+                tasks.add(pool.submit(() -> read(from, to, new Chunk<>())));
+            }
+            final Chunk<T> chunk = tasks.get(i).join();
+            // release the chunk as soon as it has been handled
+            tasks.set(i, null);
+            for (int k = 0; k < chunk.count; k++)
+                handler.accept(chunk.values.get(k), chunk.indexes[k]);
+            count += chunk.count;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the chunk from {@code from} inclusive to {@code to} exclusive, passing each excerpt to the handler, or to
+     * {@code chunk} when one is given.
+     */
+    private Chunk<T> read(final long from, final long to, final Chunk<T> chunk) {
+        final Chunk<T> result = chunk == null ? new Chunk<>() : chunk;
+        try (StoreTailer tailer = new StoreTailer(queue, queue.pool)) {
+            if (!tailer.moveToIndex(from))
+                return result;
+            while (true) {
+                if (queue.isClosing())
+                    throw new ClosedIllegalStateException("Queue closed while replaying");
+                try (DocumentContext dc = tailer.readingDocument()) {
+                    if (!dc.isPresent())
+                        return result;
+                    final long index = dc.index();
+                    if (index >= to)
+                        return result;
+                    final T value = decoder.decode(dc.wire(), index);
+                    if (chunk == null) {
+                        handler.accept(value, index);
+                        result.count++;
+                    } else {
+                        chunk.add(value, index);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the chunks as pairs of from and to indexes, in index order
+     */
+    private long[] chunks(final long fromIndex, final long toIndex) {
+        if (toIndex <= fromIndex)
+            return new long[0];
+        final RollCycle rollCycle = queue.rollCycle();
+        final int fromCycle = rollCycle.toCycle(fromIndex);
+        final int toCycle = rollCycle.toCycle(toIndex - 1);
+        long[] chunks = new long[16];
+        int size = 0;
+        for (long c : queue.listCyclesBetween(fromCycle, toCycle)) {
+            final int cycle = (int) c;
+            final long start = cycle == fromCycle ? rollCycle.toSequenceNumber(fromIndex) : 0;
+            long end = queue.excerptCounter().excerptsInCycle(cycle);
+            if (cycle == toCycle)
+                end = Math.min(end, rollCycle.toSequenceNumber(toIndex - 1) + 1);
+            for (long seq = start; seq < end; seq += chunkSize) {
+                if (size == chunks.length)
+                    chunks = Arrays.copyOf(chunks, size * 2);
+                chunks[size++] = rollCycle.toIndex(cycle, seq);
+                chunks[size++] = rollCycle.toIndex(cycle, Math.min(end, seq + chunkSize));
+            }
+        }
+        return Arrays.copyOf(chunks, size);
+    }
+
+    private static final class Chunk<T> {
+        final List<T> values = new ArrayList<>();
+        long[] indexes = new long[64];
+        int count;
+
+        void add(final T value, final long index) {
+            if (count == indexes.length)
+                indexes = Arrays.copyOf(indexes, count * 2);
+            values.add(value);
+            indexes[count++] = index;
+        }
+    }
+}
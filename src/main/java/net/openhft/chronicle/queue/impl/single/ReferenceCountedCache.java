@@ -24,20 +24,29 @@ import net.openhft.chronicle.core.util.ThrowingFunction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 /**
  * Thread-safe, self-cleaning cache for ReferenceCounted (and Closeable) objects
+ * <p>
+ * A value is reserved, or created if it has been released, atomically for its key, so a clean up can't release a value
+ * as it is got and leave two values for one key. It is then transformed without locking, so threads getting the same key
+ * only contend while reserving it.
  */
 public class ReferenceCountedCache<K, T extends ReferenceCounted & Closeable, V, E extends Throwable>
         extends AbstractCloseable {
 
-    private final Map<K, T> cache = new LinkedHashMap<>();
+    private final Map<K, T> cache = new ConcurrentHashMap<>();
     private final Function<T, V> transformer;
     private final ThrowingFunction<K, T, E> creator;
     private final ReferenceChangeListener referenceChangeListener;
+    // stops a value being released while it is transformed, reused by each thread to get without garbage
+    private final ThreadLocal<ReferenceOwner> pins = ThreadLocal.withInitial(() -> ReferenceOwner.temporary("get"));
+    private final BiFunction<K, T, T> reserveOrCreate = this::reserveOrCreate;
+    private final BiFunction<K, T, T> removeIfUnused = this::removeIfUnused;
 
     public ReferenceCountedCache(final Function<T, V> transformer,
                                  final ThrowingFunction<K, T, E> creator) {
@@ -52,33 +61,56 @@ public class ReferenceCountedCache<K, T extends ReferenceCounted & Closeable, V,
     V get(@NotNull final K key) throws E {
         throwExceptionIfClosed();
 
-        final V rv;
-        synchronized (cache) {
-            @Nullable T value = cache.get(key);
-
-            if (value == null) {
-                value = creator.apply(key);
-                value.reserveTransfer(INIT, this);
-                value.addReferenceChangeListener(referenceChangeListener);
-                //System.err.println("Reserved " + value.toString() + " by " + this);
-                cache.put(key, value);
-            }
+        final ReferenceOwner pin = pins.get();
+        final T value = cache.compute(key, reserveOrCreate);
+        try {
+            return transformer.apply(value);
+        } finally {
+            value.release(pin);
+        }
+    }
 
-            // this will add to the ref count and so needs to be done inside of sync block
-            rv = transformer.apply(value);
+    /**
+     * Called for {@code key} with the cache locked, by the thread getting it.
+     *
+     * @return the cached value if it could be reserved for this thread, otherwise a new value reserved for this thread
+     */
+    private T reserveOrCreate(final K key, @Nullable final T cached) {
+        final ReferenceOwner pin = pins.get();
+        if (cached != null && cached.tryReserve(pin))
+            return cached;
+        // a cached value has been released by other than me
+
+        final T value;
+        try {
+            value = creator.apply(key);
+        } catch (Throwable t) {
+            throw Jvm.rethrow(t);
         }
+        value.reserveTransfer(INIT, this);
+        value.addReferenceChangeListener(referenceChangeListener);
+        //System.err.println("Reserved " + value.toString() + " by " + this);
+        value.reserve(pin);
+        return value;
+    }
 
-        return rv;
+    /**
+     * Called for {@code key} with the cache locked.
+     *
+     * @return null to remove the value if it has been de-referenced by other than me
+     */
+    @Nullable
+    private T removeIfUnused(final K key, final T value) {
+        final int refCount = value.refCount();
+        if (refCount == 1)
+            value.release(this);
+        return refCount <= 1 ? null : value;
     }
 
     @Override
     protected void performClose() {
-        synchronized (cache) {
-            for (T value : cache.values()) {
-                releaseResource(value);
-            }
-            cache.clear();
-        }
+        for (K key : cache.keySet())
+            remove(key);
     }
 
     private void releaseResource(T value) {
@@ -92,10 +124,7 @@ public class ReferenceCountedCache<K, T extends ReferenceCounted & Closeable, V,
 
     public void remove(K key) {
         // harmless to call if cache is already closing/closed
-
-        synchronized (cache) {
-            releaseResource(cache.remove(key));
-        }
+        releaseResource(cache.remove(key));
     }
 
     private class TriggerFlushOnLastReferenceRemoval implements ReferenceChangeListener {
@@ -110,17 +139,9 @@ public class ReferenceCountedCache<K, T extends ReferenceCounted & Closeable, V,
         }
 
         private void bgCleanup() {
-            // remove all which have been de-referenced by other than me. Garbagy but rare
-            synchronized (cache) {
-                cache.entrySet().removeIf(entry -> {
-                    T value = entry.getValue();
-                    int refCount = value.refCount();
-                    if (refCount == 1) {
-                        value.release(ReferenceCountedCache.this);
-                    }
-                    return refCount <= 1;
-                });
-            }
+            // remove all which have been de-referenced by other than me. Rare
+            for (K key : cache.keySet())
+                cache.computeIfPresent(key, removeIfUnused);
         }
     }
 }
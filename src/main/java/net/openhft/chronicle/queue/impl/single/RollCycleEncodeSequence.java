@@ -43,6 +43,25 @@ class RollCycleEncodeSequence implements Sequence {
         writePositionAndSequence.setOrderedValue2(value);
     }
 
+    /**
+     * Sets the sequence for a write position unless a later sequence has already been set. The position and sequence share
+     * one word, so this is a CAS on it, and a writer which has been overtaken leaves the later excerpt's sequence in place.
+     */
+    void setSequenceIfLater(long sequence, long position) {
+        if (writePositionAndSequence == null)
+            return;
+        final long value = toLongValue(position, sequence);
+        final long sequenceNumber = toSequenceNumber(value);
+        while (true) {
+            final long current = writePositionAndSequence.getVolatileValue2();
+            // the position bits wrap, but sequence numbers within a cycle only increase
+            if (current != 0 && toSequenceNumber(current) >= sequenceNumber)
+                return;
+            if (writePositionAndSequence.compareAndSwapValue2(current, value))
+                return;
+        }
+    }
+
     @Override
     public long toIndex(long headerNumber, long sequence) {
         long cycle = toLowerBitsWritePosition(headerNumber);
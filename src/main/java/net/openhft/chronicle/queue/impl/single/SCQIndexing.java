@@ -236,10 +236,7 @@ class SCQIndexing extends AbstractCloseable implements Demarshallable, WriteMars
 
     long newIndex(@NotNull Wire wire, @NotNull LongArrayValues index2Index, long index2) throws StreamCorruptedException {
         try {
-            long pos = newIndex(wire, false);
-            if (!index2Index.compareAndSet(index2, NOT_INITIALIZED, pos)) {
-                throw new IllegalStateException("Index " + index2 + " in index2index was altered while we hold the write lock!");
-            }
+            long pos = newUnusedIndex(wire, index2Index, index2);
             index2Index.setMaxUsed(index2 + 1);
             return pos;
         } catch (Exception e) {
@@ -247,6 +244,18 @@ class SCQIndexing extends AbstractCloseable implements Demarshallable, WriteMars
         }
     }
 
+    /**
+     * Writes a secondary index without counting it as used in the index2index, which it is once it has an entry, so
+     * searches of the index2index don't visit indexes which are still empty.
+     */
+    private long newUnusedIndex(@NotNull Wire wire, @NotNull LongArrayValues index2Index, long index2) throws StreamCorruptedException {
+        long pos = newIndex(wire, false);
+        if (!index2Index.compareAndSet(index2, NOT_INITIALIZED, pos)) {
+            throw new IllegalStateException("Index " + index2 + " in index2index was altered while we hold the write lock!");
+        }
+        return pos;
+    }
+
     /**
      * Moves the position to the {@code index} <p> The indexes are stored in many excerpts, so the index2index tells chronicle where ( in other words
      * the addressForRead of where ) the root first level targetIndex is stored. The indexing works like a tree, but only 2 levels deep, the root of
@@ -305,27 +314,38 @@ class SCQIndexing extends AbstractCloseable implements Demarshallable, WriteMars
         if (secondaryAddress <= 0) {
             return null;
         }
-        @NotNull final LongArrayValues array1 = arrayForAddress(wireForIndex, secondaryAddress);
+        @NotNull LongArrayValues array1 = arrayForAddress(wireForIndex, secondaryAddress);
         long secondaryOffset = toAddress1(index);
 
-        do {
-            long fromAddress = array1.getValueAt(secondaryOffset);
-            if (fromAddress == 0) {
-                secondaryOffset--;
-                startIndex -= indexSpacing;
-                continue;
-            }
+        while (true) {
+            do {
+                long fromAddress = array1.getValueAt(secondaryOffset);
+                if (fromAddress == 0) {
+                    secondaryOffset--;
+                    startIndex -= indexSpacing;
+                    continue;
+                }
 
-            Wire wire = ec.wire();
-            if (wire == null)
+                Wire wire = ec.wire();
+                if (wire == null)
+                    return null;
+                if (index == startIndex) {
+                    wire.bytes().readPositionUnlimited(fromAddress);
+                    return ScanResult.FOUND;
+                } else {
+                    return linearScan(wire, index, startIndex, fromAddress);
+                }
+            } while (secondaryOffset >= 0);
+
+            // the secondary index is empty, e.g. it was preallocated, so carry on from the one before
+            if (--primaryOffset < 0)
                 break;
-            if (index == startIndex) {
-                wire.bytes().readPositionUnlimited(fromAddress);
-                return ScanResult.FOUND;
-            } else {
-                return linearScan(wire, index, startIndex, fromAddress);
-            }
-        } while (secondaryOffset >= 0);
+            secondaryAddress = index2index.getValueAt(primaryOffset);
+            if (secondaryAddress <= 0)
+                break;
+            array1 = arrayForAddress(wireForIndex, secondaryAddress);
+            secondaryOffset = indexCount - 1;
+        }
 
         return null; // no index,
     }
@@ -520,6 +540,19 @@ class SCQIndexing extends AbstractCloseable implements Demarshallable, WriteMars
                 ".readPosition()=" + bytes.readPosition() + ",toPosition=" + toPosition);
     }
 
+    /**
+     * @return the position of the first excerpt, or 0 if it has not been indexed
+     */
+    long firstExcerptPosition(@NotNull Wire wire) {
+        if (index2Index.getVolatileValue() == NOT_INITIALIZED)
+            return 0;
+        final long secondaryAddress = getIndex2index(wire).getVolatileValueAt(0);
+        if (secondaryAddress == 0)
+            return 0;
+        wire.bytes().readLimitToCapacity();
+        return arrayForAddress(wire, secondaryAddress).getVolatileValueAt(0);
+    }
+
     long nextEntryToBeIndexed() {
         return nextEntryToBeIndexed.getVolatileValue();
     }
@@ -578,6 +611,11 @@ class SCQIndexing extends AbstractCloseable implements Demarshallable, WriteMars
         }
     }
 
+    // visible for testing
+    int usedSecondaryIndexes(@NotNull ExcerptContext ec) {
+        return getUsedAsInt(getIndex2index(ec.wireForIndex()));
+    }
+
     static int getUsedAsInt(LongArrayValues index2indexArr) {
         if (((Byteable) index2indexArr).bytesStore() == null)
             return 0;
@@ -589,6 +627,14 @@ class SCQIndexing extends AbstractCloseable implements Demarshallable, WriteMars
     }
 
     void initIndex(@NotNull Wire wire) throws StreamCorruptedException {
+        initIndex(wire, 1);
+    }
+
+    /**
+     * Writes the index2index and the first {@code secondaryIndexes} secondary indexes, zero filled, so appenders only add
+     * entries to them rather than writing a new index mid cycle.
+     */
+    void initIndex(@NotNull Wire wire, int secondaryIndexes) throws StreamCorruptedException {
         long index2Index = this.index2Index.getVolatileValue();
 
         if (index2Index != NOT_INITIALIZED)
@@ -605,8 +651,17 @@ class SCQIndexing extends AbstractCloseable implements Demarshallable, WriteMars
         LongArrayValues index2index = getIndex2index(wire);
         newIndex(wire, index2index, 0);
 
+        // start each search for a free header at the last index written
+        long lastPos = oldPos;
+        for (int index2 = 1; index2 < Math.min(secondaryIndexes, indexCount); index2++) {
+            long pos = newUnusedIndex(wire, index2index, index2);
+            if (!writePosition.compareAndSwapValue(lastPos, pos))
+                throw new IllegalStateException("Who updated the position?");
+            lastPos = pos;
+        }
+
         // Reset position as it were
-        if (!writePosition.compareAndSwapValue(oldPos, 0))
+        if (!writePosition.compareAndSwapValue(lastPos, 0))
             throw new IllegalStateException("Who reset the position?");
     }
 
@@ -685,6 +740,8 @@ class SCQIndexing extends AbstractCloseable implements Demarshallable, WriteMars
         if (posN == 0) {
             indexValues.setValueAt(index3, position);
             indexValues.setMaxUsed(index3 + 1L);
+            // a preallocated index is used from its first entry
+            index2indexArr.setMaxUsed(index2 + 1L);
         } else {
             assert posN == position;
         }
@@ -25,7 +25,9 @@ import net.openhft.chronicle.core.analytics.AnalyticsFacade;
 import net.openhft.chronicle.core.annotation.PackageLocal;
 import net.openhft.chronicle.core.announcer.Announcer;
 import net.openhft.chronicle.core.io.AbstractCloseable;
+import net.openhft.chronicle.core.io.BackgroundResourceReleaser;
 import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.core.io.ClosedIllegalStateException;
 import net.openhft.chronicle.core.scoped.ScopedResource;
 import net.openhft.chronicle.core.threads.CleaningThreadLocal;
 import net.openhft.chronicle.core.threads.EventLoop;
@@ -38,6 +40,7 @@ import net.openhft.chronicle.queue.*;
 import net.openhft.chronicle.queue.impl.*;
 import net.openhft.chronicle.queue.impl.single.namedtailer.IndexUpdater;
 import net.openhft.chronicle.queue.impl.single.namedtailer.IndexUpdaterFactory;
+import net.openhft.chronicle.queue.impl.table.ReadonlyTableStore;
 import net.openhft.chronicle.queue.impl.table.SingleTableStore;
 import net.openhft.chronicle.queue.internal.AnalyticsHolder;
 import net.openhft.chronicle.threads.DiskSpaceMonitor;
@@ -51,12 +54,17 @@ import java.security.SecureRandom;
 import java.text.ParseException;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
 import java.util.function.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
@@ -79,6 +87,14 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
 
     private static final boolean SHOULD_CHECK_CYCLE = Jvm.getBoolean("chronicle.queue.checkrollcycle");
     static final int WARN_SLOW_APPENDER_MS = Jvm.getInteger("chronicle.queue.warnSlowAppenderMs", 100);
+    // the most space secondary indexes preallocated in each cycle file may take
+    static final long PREALLOCATED_INDEX_BYTES = Jvm.getLong("chronicle.queue.preallocatedIndexBytes", 64L << 20);
+    // as sparse as the sparsest roll cycles
+    static final int MAX_ADAPTIVE_INDEX_SPACING = 1 << 20;
+    // the fewest excerpts a stream splits its range into
+    static final int STREAM_MIN_SPLIT_SIZE = Jvm.getInteger("chronicle.queue.streamMinSplitSize", 1 << 10);
+    // the most excerpts of a cycle each replay task reads
+    static final int REPLAY_CHUNK_SIZE = Jvm.getInteger("chronicle.queue.replayChunkSize", 64 << 10);
 
     @NotNull
     protected final EventLoop eventLoop;
@@ -87,6 +103,7 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
     @NotNull
     protected final WireStorePool pool;
     protected final boolean doubleBuffer;
+    final boolean lockFreeAppend;
     final Supplier<TimingPauser> pauserSupplier;
     final long timeoutMS;
     @NotNull
@@ -143,6 +160,28 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
     private final long forceDirectoryListingRefreshIntervalMs;
     private final long[] chunkCount = {0};
     private final SyncMode syncMode;
+    private StagingSequencer stagingSequencer;
+    private final boolean groupCommit;
+    private volatile GroupCommitSyncer groupCommitSyncer;
+    // completed as lastIndexMSynced advances, keyed by index
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Long>> msyncFutures = new ConcurrentSkipListMap<>();
+    private final List<MSyncListener> msyncListeners = new CopyOnWriteArrayList<>();
+    // tailers waiting for an excerpt to be appended
+    final AppendWaiters appendWaiters = new AppendWaiters();
+    private final ExcerptCounter excerptCounter = new ExcerptCounter(this);
+    @Nullable
+    private final CycleSummaries cycleSummaries;
+    @Nullable
+    private final TimeIndex timeIndex;
+    @Nullable
+    private final KeyIndex keyIndex;
+    private final boolean backgroundIndexing;
+    @Nullable
+    private BackgroundIndexer backgroundIndexer;
+    private final int preallocatedIndexes;
+    private final int indexSpacingBytes;
+    // the index spacing for new cycles, once a cycle has been measured
+    private volatile int adaptiveIndexSpacing;
 
     protected SingleChronicleQueue(@NotNull final SingleChronicleQueueBuilder builder) {
         try {
@@ -153,7 +192,7 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
 
             storeFileListener = builder.storeFileListener();
             storeSupplier = new StoreSupplier();
-            pool = WireStorePool.withSupplier(storeSupplier, storeFileListener);
+            pool = WireStorePool.withSupplier(storeSupplier, storeFileListener, builder.keepWarmStores(), builder.keepWarmMillis());
             isBuffered = BufferMode.Asynchronous == builder.writeBufferMode();
             path = builder.path();
             if (!builder.readOnly())
@@ -179,7 +218,9 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
             checkInterrupts = builder.checkInterrupts();
             metaStore = builder.metaStore();
             doubleBuffer = builder.doubleBuffer();
+            lockFreeAppend = builder.lockFreeAppend();
             syncMode = builder.syncMode();
+            groupCommit = builder.groupCommit();
             if (metaStore.readOnly() && !builder.readOnly()) {
                 Jvm.warn().on(getClass(), "Forcing queue to be readOnly file=" + path);
                 // need to set this on builder as it is used elsewhere
@@ -191,11 +232,21 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
             if (metaStore.readOnly()) {
                 this.directoryListing = new FileSystemDirectoryListing(path, fileNameToCycleFunction());
             } else {
-                this.directoryListing = readOnly ? new TableDirectoryListingReadOnly(metaStore) : new TableDirectoryListing(metaStore, path.toPath(), fileNameToCycleFunction());
+                this.directoryListing = readOnly ? new TableDirectoryListingReadOnly(metaStore) : new TableDirectoryListing(metaStore, path.toPath(), fileNameToCycleFunction(), builder.trackLastIndexCommitted());
                 directoryListing.init();
             }
 
             this.directoryListing.refresh(true);
+            this.cycleSummaries = builder.trackCycleSummaries() && !(metaStore instanceof ReadonlyTableStore)
+                    ? new CycleSummaries(this, metaStore)
+                    : null;
+            this.timeIndex = builder.timeIndex() ? new TimeIndex(this) : null;
+            this.keyIndex = builder.keyExtractor() == null ? null : new KeyIndex(this, builder.keyExtractor());
+            if (!readOnly)
+                removeOrphanIndexes();
+            this.backgroundIndexing = builder.backgroundIndexing();
+            this.preallocatedIndexes = builder.preallocateIndexes() ? preallocatedIndexes(indexCount) : 1;
+            this.indexSpacingBytes = builder.indexSpacingBytes();
             this.writeLock = builder.writeLock();
 
             // release the write lock if the process is dead
@@ -235,6 +286,16 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
 
             AnalyticsHolder.instance().sendEvent("started", additionalEventParameters);
 
+            if (keyIndex != null && !readOnly) {
+                eventLoop.addHandler(keyIndex);
+                eventLoop.start();
+            }
+            if (backgroundIndexing && !readOnly) {
+                backgroundIndexer = new BackgroundIndexer(this);
+                eventLoop.addHandler(backgroundIndexer);
+                eventLoop.start();
+            }
+
             singleThreadedCheckDisabled(true);
         } catch (Throwable t) {
             close();
@@ -323,8 +384,61 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
 
     @Override
     public void lastIndexMSynced(long lastIndexMSynced) {
-        if (this.lastIndexMSynced != null)
+        if (this.lastIndexMSynced != null) {
             this.lastIndexMSynced.setMaxValue(lastIndexMSynced);
+            notifyMSynced(lastIndexMSynced());
+        }
+    }
+
+    /**
+     * @return the last index committed by an appender, or -1 if it is not tracked
+     * @see SingleChronicleQueueBuilder#trackLastIndexCommitted(boolean)
+     */
+    public long lastIndexCommitted() {
+        return directoryListing.lastIndex();
+    }
+
+    void lastIndexCommitted(long index) {
+        directoryListing.onAppend(index);
+    }
+
+    private void notifyMSynced(final long synced) {
+        for (MSyncListener listener : msyncListeners)
+            listener.onMSynced(synced);
+        Map.Entry<Long, CompletableFuture<Long>> entry;
+        while ((entry = msyncFutures.firstEntry()) != null && entry.getKey() <= synced) {
+            if (msyncFutures.remove(entry.getKey(), entry.getValue()))
+                entry.getValue().complete(synced);
+        }
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Long> whenMSynced(long index) {
+        throwExceptionIfClosed();
+        if (lastIndexMSynced == null)
+            throw new IllegalStateException("Indexes are not msync-ed by a read-only chronicle");
+
+        long synced = lastIndexMSynced();
+        if (synced >= index)
+            return CompletableFuture.completedFuture(synced);
+        final CompletableFuture<Long> future = msyncFutures.computeIfAbsent(index, i -> new CompletableFuture<>());
+        // the index may have been synced before the future was added
+        synced = lastIndexMSynced();
+        if (synced >= index && msyncFutures.remove(index, future))
+            future.complete(synced);
+        return future;
+    }
+
+    @Override
+    public void addMSyncListener(@NotNull MSyncListener listener) {
+        throwExceptionIfClosed();
+        msyncListeners.add(listener);
+    }
+
+    @Override
+    public void removeMSyncListener(@NotNull MSyncListener listener) {
+        msyncListeners.remove(listener);
     }
 
     @Override
@@ -434,6 +548,32 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
         return indexSpacing;
     }
 
+    /**
+     * @return the index spacing to create a new cycle with
+     * @see SingleChronicleQueueBuilder#indexSpacingBytes(int)
+     */
+    int newCycleIndexSpacing() {
+        final int spacing = adaptiveIndexSpacing;
+        return spacing > 0 ? spacing : indexSpacing;
+    }
+
+    /**
+     * Called when an appender leaves a cycle holding {@code excerpts} in {@code length} bytes, so the spacing of the next
+     * cycle puts an index entry about every {@link SingleChronicleQueueBuilder#indexSpacingBytes()} bytes.
+     */
+    void onCycleMeasured(final long excerpts, final long length) {
+        if (indexSpacingBytes <= 0 || excerpts <= 0)
+            return;
+        final long bytesPerExcerpt = Math.max(1, length / excerpts);
+        final long spacing = Long.highestOneBit(Math.max(1, indexSpacingBytes / bytesPerExcerpt));
+        // never below the configured spacing, which every sequence number in a cycle needs to be indexable
+        adaptiveIndexSpacing = (int) Math.max(indexSpacing, Math.min(MAX_ADAPTIVE_INDEX_SPACING, spacing));
+    }
+
+    boolean adaptiveIndexSpacing() {
+        return indexSpacingBytes > 0;
+    }
+
     @Override
     public long epoch() {
         return epoch;
@@ -530,6 +670,67 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
         return createNewAppenderOnceConditionIsMet();
     }
 
+    /**
+     * Creates an appender which stages excerpts in its own off-heap ring of {@link #bufferCapacity()} bytes, rather than
+     * contending for the write lock.
+     * <p>
+     * A single sequencer on the {@link #eventLoop()} drains the rings of all staging appenders into the queue in batches.
+     * Writing an excerpt only blocks if the ring is full, but its index is not known until the sequencer has appended it.
+     * <p>
+     * Only data excerpts can be staged. Excerpts staged by one appender are appended in the order they were written.
+     *
+     * @param appenderListener called on the event loop thread with the index of each excerpt once it has been appended, or null
+     * @return a new staging appender, which should be used by a single thread
+     */
+    @NotNull
+    public ExcerptAppender createStagingAppender(@Nullable AppenderListener appenderListener) {
+        throwExceptionIfClosed();
+
+        if (readOnly)
+            throw new IllegalStateException("Can't append to a read-only chronicle");
+
+        final StagingRing ring = new StagingRing(bufferCapacity);
+        final StagingAppender stagingAppender = new StagingAppender(this, ring, appenderListener);
+        try {
+            stagingSequencer().register(stagingAppender);
+        } catch (RuntimeException e) {
+            ring.close();
+            throw e;
+        }
+        return stagingAppender;
+    }
+
+    @NotNull
+    private StagingSequencer stagingSequencer() {
+        synchronized (closers) {
+            if (stagingSequencer == null) {
+                stagingSequencer = new StagingSequencer(this);
+                eventLoop.addHandler(stagingSequencer);
+                eventLoop.start();
+            }
+            return stagingSequencer;
+        }
+    }
+
+    /**
+     * @return the syncer shared by appenders when group commit is enabled, otherwise null
+     */
+    @Nullable
+    GroupCommitSyncer groupCommitSyncer() {
+        if (!groupCommit || syncMode == SyncMode.NONE)
+            return null;
+        final GroupCommitSyncer syncer = groupCommitSyncer;
+        if (syncer != null)
+            return syncer;
+        synchronized (closers) {
+            if (groupCommitSyncer == null) {
+                throwExceptionIfClosed();
+                groupCommitSyncer = new GroupCommitSyncer(this);
+            }
+            return groupCommitSyncer;
+        }
+    }
+
     /**
      * @return the {@link WriteLock} that is used to lock writes to the queue. This is the mechanism used to
      * coordinate writes from multiple threads and processes.
@@ -630,80 +831,183 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
     public long countExcerpts(long fromIndex, long toIndex) {
         throwExceptionIfClosed();
 
-        try (ExcerptTailer tailer = createTailer()) {
-            if (fromIndex > toIndex) {
-                long temp = fromIndex;
-                fromIndex = toIndex;
-                toIndex = temp;
-            }
+        if (fromIndex > toIndex) {
+            long temp = fromIndex;
+            fromIndex = toIndex;
+            toIndex = temp;
+        }
 
-            // if the are the same
-            if (fromIndex == toIndex)
-                return 0;
+        // if the are the same
+        if (fromIndex == toIndex)
+            return 0;
 
-            long result = 0;
+        long result = 0;
 
-            // some of the sequences maybe at -1 so we will add 1 to the cycle and update the result
-            // accordingly
-            RollCycle rollCycle = rollCycle();
-            long sequenceNotSet = rollCycle.toSequenceNumber(-1);
+        // some of the sequences maybe at -1 so we will add 1 to the cycle and update the result
+        // accordingly
+        RollCycle rollCycle = rollCycle();
+        long sequenceNotSet = rollCycle.toSequenceNumber(-1);
 
-            if (rollCycle.toSequenceNumber(fromIndex) == sequenceNotSet) {
-                result++;
-                fromIndex++;
-            }
+        if (rollCycle.toSequenceNumber(fromIndex) == sequenceNotSet) {
+            result++;
+            fromIndex++;
+        }
 
-            if (rollCycle.toSequenceNumber(toIndex) == sequenceNotSet) {
-                result--;
-                toIndex++;
-            }
+        if (rollCycle.toSequenceNumber(toIndex) == sequenceNotSet) {
+            result--;
+            toIndex++;
+        }
 
-            int lowerCycle = rollCycle.toCycle(fromIndex);
-            int upperCycle = rollCycle.toCycle(toIndex);
+        int lowerCycle = rollCycle.toCycle(fromIndex);
+        int upperCycle = rollCycle.toCycle(toIndex);
 
-            if (lowerCycle == upperCycle)
-                return toIndex - fromIndex;
+        if (lowerCycle == upperCycle)
+            return toIndex - fromIndex;
 
-            long upperSeqNum = rollCycle.toSequenceNumber(toIndex);
-            long lowerSeqNum = rollCycle.toSequenceNumber(fromIndex);
+        long upperSeqNum = rollCycle.toSequenceNumber(toIndex);
+        long lowerSeqNum = rollCycle.toSequenceNumber(fromIndex);
 
-            if (lowerCycle + 1 == upperCycle) {
-                long l = tailer.exactExcerptsInCycle(lowerCycle);
-                result += (l - lowerSeqNum) + upperSeqNum;
-                return result;
-            }
+        if (lowerCycle + 1 == upperCycle) {
+            long l = excerptCounter.excerptsInCycle(lowerCycle);
+            result += (l - lowerSeqNum) + upperSeqNum;
+            return result;
+        }
 
-            NavigableSet<Long> cycles;
-            try {
-                cycles = listCyclesBetween(lowerCycle, upperCycle);
-            } catch (Exception e) {
-                throw new IllegalStateException(e);
-            }
+        // because we are inclusive, for example if we were at the end, then this
+        // is 1 except rather than zero
+        result += excerptCounter.excerptsInCycles(lowerCycle, upperCycle) - lowerSeqNum;
+        result += upperSeqNum;
+        return result;
+    }
 
-            if (cycles.first() == lowerCycle) {
-                // because we are inclusive, for example  if we were at the end, then this
-                // is 1 except rather than zero
-                long l = tailer.exactExcerptsInCycle(lowerCycle);
-                result += (l - lowerSeqNum);
-            } else
-                throw new IllegalStateException("Cycle not found, lower-cycle=" + Long.toHexString(lowerCycle));
-
-            if (cycles.last() == upperCycle) {
-                result += upperSeqNum;
-            } else
-                throw new IllegalStateException("Cycle not found,  upper-cycle=" + Long.toHexString(upperCycle));
-
-            if (cycles.size() == 2)
-                return result;
-
-            final long[] array = cycles.stream().mapToLong(i -> i).toArray();
-            for (int i = 1; i < array.length - 1; i++) {
-                long x = tailer.exactExcerptsInCycle(Math.toIntExact(array[i]));
-                result += x;
-            }
+    /**
+     * Called by an appender which has written to {@code cycle} with {@link StoreAppender#writeBytes(long, BytesStore)}
+     * while a later cycle exists, e.g. when back filling, as the count of excerpts cached or summarised for the cycle no
+     * longer applies.
+     */
+    void onWrittenToEarlierCycle(final int cycle) {
+        excerptCounter.onWrittenTo(cycle);
+        if (cycleSummaries != null)
+            cycleSummaries.onWrittenTo(cycle);
+    }
 
-            return result;
-        }
+    /**
+     * @return the summaries of closed cycles, or null if they are not tracked
+     * @see SingleChronicleQueueBuilder#trackCycleSummaries(boolean)
+     */
+    @Nullable
+    CycleSummaries cycleSummaries() {
+        return cycleSummaries;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see SingleChronicleQueueBuilder#keyExtractor(KeyExtractor)
+     */
+    @Override
+    public long indexForKey(long key) {
+        throwExceptionIfClosed();
+        if (keyIndex == null)
+            throw new UnsupportedOperationException("Keys are not indexed, see SingleChronicleQueueBuilder.keyExtractor()");
+        return keyIndex.indexForKey(key);
+    }
+
+    @Nullable
+    KeyIndex keyIndex() {
+        return keyIndex;
+    }
+
+    /**
+     * Removes the time indexes and key tables left by cycle files which have been deleted.
+     */
+    private void removeOrphanIndexes() {
+        if (timeIndex != null)
+            TimeIndex.removeOrphans(path);
+        if (keyIndex != null)
+            KeyIndex.removeOrphans(path);
+    }
+
+    /**
+     * Replays the excerpts from {@code fromIndex} inclusive to {@code toIndex} exclusive, as they exist when called, for
+     * reprocessing history. The range is split by cycle, and into chunks within large cycles, which are decoded on
+     * {@code parallelism} threads.
+     * <p>
+     * If {@code ordered}, the handler is called on this thread in index order, while later chunks are decoded ahead.
+     * Otherwise it is called on the decoding threads as each excerpt is decoded, so it must be thread-safe.
+     *
+     * @param decoder decodes each excerpt, on any of the replaying threads
+     * @param handler is passed each decoded excerpt and its index
+     * @return the number of excerpts replayed
+     */
+    public <T> long replay(final long fromIndex,
+                           final long toIndex,
+                           final int parallelism,
+                           final boolean ordered,
+                           @NotNull final ExcerptDecoder<T> decoder,
+                           @NotNull final ObjLongConsumer<? super T> handler) {
+        throwExceptionIfClosed();
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism: " + parallelism);
+        return new ParallelReplay<>(this, REPLAY_CHUNK_SIZE, decoder, handler)
+                .replay(fromIndex, toIndex, parallelism, ordered);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Ranges are split into parts of at least {@code chronicle.queue.streamMinSplitSize} excerpts, 1024 by default.
+     */
+    @Override
+    public <T> Stream<T> stream(final long fromIndex, final long toIndex, @NotNull final ExcerptDecoder<T> decoder) {
+        throwExceptionIfClosed();
+        final ExcerptSpliterator<T> spliterator = new ExcerptSpliterator<>(this, decoder, STREAM_MIN_SPLIT_SIZE, fromIndex, toIndex);
+        return StreamSupport.stream(spliterator, false)
+                .onClose(spliterator::close);
+    }
+
+    @NotNull
+    ExcerptCounter excerptCounter() {
+        return excerptCounter;
+    }
+
+    /**
+     * @return the number of secondary indexes to write in a new cycle file, as many as fit in {@link #PREALLOCATED_INDEX_BYTES}
+     */
+    static int preallocatedIndexes(int indexCount) {
+        final long indexBytes = indexCount * 8L + 128;
+        return (int) Math.max(1, Math.min(indexCount, PREALLOCATED_INDEX_BYTES / indexBytes));
+    }
+
+    /**
+     * @return true if index entries are added by a {@link BackgroundIndexer} rather than by appenders
+     * @see SingleChronicleQueueBuilder#backgroundIndexing(boolean)
+     */
+    boolean backgroundIndexing() {
+        return backgroundIndexing;
+    }
+
+    /**
+     * @return the time index of the cycles, or null if it is not kept
+     * @see SingleChronicleQueueBuilder#timeIndex(boolean)
+     */
+    @Nullable
+    TimeIndex timeIndex() {
+        return timeIndex;
+    }
+
+    @NotNull
+    File cycleFile(int cycle) {
+        return dateCache.resourceFor(cycle).path;
+    }
+
+    long directoryListingModCount() {
+        return directoryListing.modCount();
+    }
+
+    @NotNull
+    NavigableMap<Long, File> cycleTree(boolean force) {
+        return storeSupplier.cycleTree(force);
     }
 
     public NavigableSet<Long> listCyclesBetween(int lowerCycle, int upperCycle) {
@@ -724,13 +1028,25 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
     @Override
     protected void performClose() {
         synchronized (closers) {
+            // appends what has been staged, so before the appenders are closed
+            closeQuietly(stagingSequencer);
             metaStoreMap.values().forEach(Closeable::closeQuietly);
             metaStoreMap.clear();
             closers.forEach(Closeable::closeQuietly);
             closers.clear();
 
+            msyncListeners.clear();
+            final ClosedIllegalStateException closed = new ClosedIllegalStateException("Closed before the index was msync-ed");
+            msyncFutures.values().forEach(future -> future.completeExceptionally(closed));
+            msyncFutures.clear();
+
             // must be closed after closers.
             closeQuietly(
+                    groupCommitSyncer,
+                    excerptCounter,
+                    cycleSummaries,
+                    keyIndex,
+                    backgroundIndexer,
                     createAppenderCondition,
                     directoryListing,
                     lastAcknowledgedIndexReplicated,
@@ -782,6 +1098,11 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
 
     @Override
     public long lastIndex() {
+        final long committed = lastIndexCommitted();
+        // a later cycle may not have had an excerpt committed yet
+        if (committed != -1 && rollCycle.toCycle(committed) >= lastCycle())
+            return committed;
+
         // This is a slow implementation that gets a Tailer/DocumentContext to find the last index
         try (final ExcerptTailer tailer = createTailer().direction(BACKWARD).toEnd()) {
             while (true) {
@@ -1119,16 +1440,29 @@ SingleChronicleQueue extends AbstractCloseable implements RollingChronicleQueue
         }
 
         private void createIndexThenUpdateHeader(AbstractWire wire, int cycle, SingleChronicleQueueStore wireStore) {
+            // a summary, time index or key table left by an earlier file of this cycle no longer applies, and must be
+            // dropped before the header is published and other appenders can write to the cycle
+            if (cycleSummaries != null)
+                cycleSummaries.onCreated(cycle);
+            if (timeIndex != null)
+                TimeIndex.onCycleFileCreated(cycleFile(cycle));
+            if (keyIndex != null)
+                keyIndex.onCycleFileCreated(cycle);
+
             // Should very carefully prepare all data structures before publishing initial header
             wire.usePadding(wireStore.dataVersion() > 0);
             wire.padToCacheAlign();
             long headerEndPos = wire.bytes().writePosition();
-            wireStore.initIndex(wire);
+            wireStore.initIndex(wire, preallocatedIndexes);
             wire.updateFirstHeader(headerEndPos);
             wire.bytes().writePosition(SPB_HEADER_SIZE);
 
             // allow directoryListing to pick up the file immediately
             directoryListing.onFileCreated(path, cycle);
+
+            // listing the directory for indexes left by deleted cycle files is kept off the write lock
+            if (timeIndex != null || keyIndex != null)
+                BackgroundResourceReleaser.run(SingleChronicleQueue.this::removeOrphanIndexes);
         }
 
         @Override
@@ -145,10 +145,21 @@ public class SingleChronicleQueueBuilder extends SelfDescribingMarshallable impl
     private ZoneId rollTimeZone;
     private QueueOffsetSpec queueOffsetSpec;
     private boolean doubleBuffer;
+    private boolean lockFreeAppend;
     private Function<SingleChronicleQueue, Condition> createAppenderConditionCreator;
     private long forceDirectoryListingRefreshIntervalMs = 60_000;
     private AppenderListener appenderListener;
     private SyncMode syncMode;
+    private boolean groupCommit;
+    private boolean trackLastIndexCommitted;
+    private boolean trackCycleSummaries;
+    private boolean timeIndex;
+    private KeyExtractor keyExtractor;
+    private boolean backgroundIndexing;
+    private boolean preallocateIndexes;
+    private int indexSpacingBytes;
+    private int keepWarmStores;
+    private long keepWarmMillis;
 
     protected SingleChronicleQueueBuilder() {
     }
@@ -228,7 +239,9 @@ public class SingleChronicleQueueBuilder extends SelfDescribingMarshallable impl
                 queue.wireType(),
                 mappedBytes,
                 queue.indexCount(),
-                queue.indexSpacing());
+                queue instanceof SingleChronicleQueue
+                        ? ((SingleChronicleQueue) queue).newCycleIndexSpacing()
+                        : queue.indexSpacing());
 
         wire.writeEventName(MetaDataKeys.header).typedMarshallable(wireStore);
         return wireStore;
@@ -1058,6 +1071,33 @@ public class SingleChronicleQueueBuilder extends SelfDescribingMarshallable impl
         return this;
     }
 
+    public boolean lockFreeAppend() {
+        return lockFreeAppend;
+    }
+
+    /**
+     * <p>
+     * Enables appending with {@link ExcerptAppender#writeBytes(BytesStore)} without acquiring the write lock.
+     * </p><p>
+     * Normally, all writes to the queue are serialized by the write lock. When lock-free appends are enabled, a producer
+     * instead reserves the next free header with a compare-and-swap, recording the length of the excerpt so other producers can
+     * reserve the headers after it concurrently. The payload is then copied in and the header is completed, at which point
+     * tailers can read it. The write position only ever moves forward.
+     * </p><p>
+     * The write lock is still taken to create or roll a cycle and once every {@link #indexSpacing()} excerpts to add an
+     * index entry. Excerpts written with {@link ExcerptAppender#writingDocument()} are not affected, as their length is not
+     * known up front, and still take the write lock.
+     * </p><p>
+     * A header reserved by a producer which dies before completing it is never recovered. Later lock-free producers skip it,
+     * as its length is known, but tailers stop at it and read nothing after it in that cycle, and writers holding the write
+     * lock may time out waiting for it. Only enable lock-free appends where producers are not expected to die mid-append.
+     * </p>
+     */
+    public SingleChronicleQueueBuilder lockFreeAppend(boolean lockFreeAppend) {
+        this.lockFreeAppend = lockFreeAppend;
+        return this;
+    }
+
     public Supplier<BiConsumer<BytesStore, Bytes<?>>> encodingSupplier() {
         return encodingSupplier;
     }
@@ -1184,6 +1224,197 @@ public class SingleChronicleQueueBuilder extends SelfDescribingMarshallable impl
         return syncMode == null ? MappedFile.DEFAULT_SYNC_MODE : syncMode;
     }
 
+    public boolean groupCommit() {
+        return groupCommit;
+    }
+
+    /**
+     * <p>
+     * Enables group commit for {@link ExcerptAppender#sync()}.
+     * </p><p>
+     * Normally, each call to sync() issues its own msync. With group commit, appenders register the position they need
+     * durable and wait, while a single background thread issues one msync covering every position registered so far and then
+     * wakes all the appenders it covers. This trades a little latency for much higher durable throughput with many appenders.
+     * </p><p>
+     * The msync uses the {@link #syncMode()}, so this has no effect unless that is {@link SyncMode#SYNC} or {@link SyncMode#ASYNC}.
+     * </p>
+     */
+    public SingleChronicleQueueBuilder groupCommit(boolean groupCommit) {
+        this.groupCommit = groupCommit;
+        return this;
+    }
+
+    public boolean trackLastIndexCommitted() {
+        return trackLastIndexCommitted;
+    }
+
+    /**
+     * <p>
+     * Keeps the last index committed by an appender in the queue's directory listing, alongside the first and last cycles,
+     * so {@link SingleChronicleQueue#lastIndex()} is a single read rather than a search from the end of the last cycle, and
+     * other processes can watch it for appends. Read-only queues use it if it is present.
+     * </p><p>
+     * Every process appending to the queue must enable this, otherwise the index kept may fall behind theirs.
+     * </p>
+     */
+    public SingleChronicleQueueBuilder trackLastIndexCommitted(boolean trackLastIndexCommitted) {
+        this.trackLastIndexCommitted = trackLastIndexCommitted;
+        return this;
+    }
+
+    public boolean trackCycleSummaries() {
+        return trackCycleSummaries;
+    }
+
+    /**
+     * <p>
+     * Records a summary of each cycle in the queue's metadata as the cycle is rolled: the number of excerpts in it, where its
+     * data ends and when it was closed. Counting the excerpts in a closed cycle, e.g. in
+     * {@link SingleChronicleQueue#countExcerpts(long, long)} or a binary search, is then a lookup rather than a search of the
+     * cycle's index.
+     * </p><p>
+     * Cycles rolled before this was enabled, or by an appender without it, have no summary and are searched as before.
+     * Only the most recent 1024 cycles keep their summaries, so the metadata does not grow as the queue rolls; the number
+     * can be changed with the system property {@code chronicle.queue.cycleSummaries}.
+     * </p>
+     */
+    public SingleChronicleQueueBuilder trackCycleSummaries(boolean trackCycleSummaries) {
+        this.trackCycleSummaries = trackCycleSummaries;
+        return this;
+    }
+
+    public boolean timeIndex() {
+        return timeIndex;
+    }
+
+    /**
+     * <p>
+     * Keeps a time index beside each cycle file, holding the time every {@link #indexSpacing()}'th excerpt was written
+     * according to the {@link #timeProvider()}. {@link ExcerptTailer#moveToTime(long)} uses it to move to a time with a few
+     * reads rather than a binary search which reads excerpts.
+     * </p><p>
+     * Every process appending to the queue must enable this, otherwise its excerpts are missing from the index and replays from
+     * a time may start earlier than needed. An index file is removed when its cycle file is created again, and
+     * once its cycle file has been deleted, when the queue next rolls.
+     * </p>
+     */
+    public SingleChronicleQueueBuilder timeIndex(boolean timeIndex) {
+        this.timeIndex = timeIndex;
+        return this;
+    }
+
+    @Nullable
+    public KeyExtractor keyExtractor() {
+        return keyExtractor;
+    }
+
+    /**
+     * <p>
+     * Indexes excerpts by the key {@code keyExtractor} returns, for {@link SingleChronicleQueue#indexForKey(long)}.
+     * </p><p>
+     * Unless the queue is read-only, a tailer on the {@link #eventLoop()} keeps a hash table beside each cycle file, so
+     * appenders are not slowed down. Lookups scan whatever it hasn't indexed yet, and a missing table is rebuilt from its
+     * cycle file. A table is removed when its cycle file is created again, and once its cycle file has been deleted, when the
+     * queue next rolls.
+     * </p>
+     */
+    public SingleChronicleQueueBuilder keyExtractor(KeyExtractor keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        return this;
+    }
+
+    public boolean backgroundIndexing() {
+        return backgroundIndexing;
+    }
+
+    /**
+     * <p>
+     * Adds the index entry every {@link #indexSpacing()} excerpts on the {@link #eventLoop()} rather than as each excerpt is
+     * appended, so appenders never take the write lock for an index entry or allocate a new index array. Until an entry has
+     * been added, moving to an index scans forward from the entry before it.
+     * </p><p>
+     * Every process appending to the queue should enable this, otherwise its appenders still add index entries inline.
+     * </p>
+     */
+    public SingleChronicleQueueBuilder backgroundIndexing(boolean backgroundIndexing) {
+        this.backgroundIndexing = backgroundIndexing;
+        return this;
+    }
+
+    public boolean preallocateIndexes() {
+        return preallocateIndexes;
+    }
+
+    /**
+     * <p>
+     * Writes the secondary index arrays, zero filled, when a cycle file is created, so appenders only store each index entry
+     * rather than occasionally appending a new index array to the cycle. A cycle file pre-created, see {@link PrecreatedFiles},
+     * by a queue with this enabled has its arrays written before any appender uses it.
+     * </p><p>
+     * Each array takes {@link #indexCount()} * 8 bytes, so only as many are written as fit in
+     * {@code chronicle.queue.preallocatedIndexBytes}, 64 MiB by default, and further arrays are added as needed.
+     * </p>
+     */
+    public SingleChronicleQueueBuilder preallocateIndexes(boolean preallocateIndexes) {
+        this.preallocateIndexes = preallocateIndexes;
+        return this;
+    }
+
+    public int indexSpacingBytes() {
+        return indexSpacingBytes;
+    }
+
+    /**
+     * <p>
+     * Chooses the index spacing of each new cycle from the average excerpt size of the cycle before, so an index entry
+     * falls about every {@code indexSpacingBytes} bytes, and moving to an index scans about as many bytes whatever the size
+     * of the excerpts. Zero, the default, always uses {@link #indexSpacing()}.
+     * </p><p>
+     * The spacing is stored in each cycle file, so readers need no configuration. It is never less than
+     * {@link #indexSpacing()}, as the index would then fill up before the cycle does, so only cycles of excerpts smaller
+     * than {@code indexSpacingBytes / indexSpacing()} get a sparser index.
+     * </p>
+     */
+    public SingleChronicleQueueBuilder indexSpacingBytes(int indexSpacingBytes) {
+        this.indexSpacingBytes = indexSpacingBytes;
+        return this;
+    }
+
+    public int keepWarmStores() {
+        return keepWarmStores;
+    }
+
+    /**
+     * <p>
+     * Keeps up to this many of the cycle stores most recently closed by tailers mapped, and hands them out again when their
+     * cycles are next needed, rather than unmapping and remapping the cycle file. This helps a tailer which moves back and
+     * forth between cycles, e.g. reading backwards or in a binary search. Zero, the default, releases stores once closed.
+     * </p><p>
+     * Each store kept warm holds its cycle file mapped, so a {@link StoreFileListener} is only told it is released once it
+     * is evicted, see also {@link #keepWarmMillis(long)}.
+     * </p>
+     */
+    public SingleChronicleQueueBuilder keepWarmStores(int keepWarmStores) {
+        this.keepWarmStores = keepWarmStores;
+        return this;
+    }
+
+    public long keepWarmMillis() {
+        return keepWarmMillis;
+    }
+
+    /**
+     * <p>
+     * Releases a store kept warm once it has been closed for this long, as well as when more recently closed stores displace
+     * it. Zero, the default, keeps it for as long as it is one of the {@link #keepWarmStores()} most recently closed.
+     * Stores are evicted as others are acquired or closed, rather than by a background thread.
+     * </p>
+     */
+    public SingleChronicleQueueBuilder keepWarmMillis(long keepWarmMillis) {
+        this.keepWarmMillis = keepWarmMillis;
+        return this;
+    }
+
     enum DefaultPauserSupplier implements Supplier<TimingPauser> {
         INSTANCE;
 
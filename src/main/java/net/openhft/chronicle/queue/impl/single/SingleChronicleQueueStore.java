@@ -55,7 +55,7 @@ public class SingleChronicleQueueStore extends AbstractCloseable implements Wire
     private final MappedFile mappedFile;
     private final int dataVersion;
     @NotNull
-    private final transient Sequence sequence;
+    private final transient RollCycleEncodeSequence sequence;
 
     private int cycle;
 
@@ -115,9 +115,8 @@ public class SingleChronicleQueueStore extends AbstractCloseable implements Wire
 
         this.indexing = new SCQIndexing(wireType, indexCount, indexSpacing);
         this.indexing.writePosition = this.writePosition = wireType.newTwoLongReference().get();
-        this.indexing.sequence = this.sequence = new RollCycleEncodeSequence(writePosition,
-                rollCycle.defaultIndexCount(),
-                rollCycle.defaultIndexSpacing());
+        // must match the sequence a store loaded from this file decodes with
+        this.indexing.sequence = this.sequence = new RollCycleEncodeSequence(writePosition, indexCount, indexSpacing);
         this.dataVersion = 1;
 
         singleThreadedCheckDisabled(true);
@@ -351,10 +350,17 @@ public class SingleChronicleQueueStore extends AbstractCloseable implements Wire
 
     @Override
     public void initIndex(@NotNull Wire wire) {
+        initIndex(wire, 1);
+    }
+
+    /**
+     * Initialises the index, writing the first {@code secondaryIndexes} secondary indexes up front.
+     */
+    void initIndex(@NotNull Wire wire, int secondaryIndexes) {
         throwExceptionIfClosedInSetter();
 
         try {
-            indexing.initIndex(wire);
+            indexing.initIndex(wire, secondaryIndexes);
         } catch (IOException ex) {
             throw new UncheckedIOException(ex);
         }
@@ -373,12 +379,45 @@ public class SingleChronicleQueueStore extends AbstractCloseable implements Wire
 
         sequence.setSequence(sequenceNumber, position);
 
+        indexPositionForSequenceNumber(ec, sequenceNumber, position);
+    }
+
+    /**
+     * Adds an index entry for the sequence number if it is due to be indexed, without publishing it as the last
+     * written sequence number.
+     */
+    void indexPositionForSequenceNumber(@NotNull final ExcerptContext ec,
+                                        long sequenceNumber,
+                                        long position) throws StreamCorruptedException {
         long nextSequence = indexing.nextEntryToBeIndexed();
         if (nextSequence > sequenceNumber)
             return;
 
         indexing.setPositionForSequenceNumber(ec, sequenceNumber, position);
+    }
 
+    /**
+     * @return the position of the first excerpt, or 0 if it has not been indexed
+     */
+    long firstExcerptPosition(@NotNull final ExcerptContext ec) {
+        return indexing.firstExcerptPosition(ec.wireForIndex());
+    }
+
+    /**
+     * @param position a position read from {@link #writePosition()}
+     * @return the sequence number of the excerpt at {@code position} if it is still the last written, otherwise a negative value
+     */
+    long lastSequenceNumberAt(long position) {
+        return sequence.getSequence(position);
+    }
+
+    /**
+     * Records the sequence number of the excerpt at {@code position} unless a later excerpt's has been recorded. Used when
+     * excerpts are appended without the write lock, so a later excerpt may already have been published.
+     */
+    void lastSequenceNumberAt(long sequenceNumber, long position) {
+        if (writePosition.getVolatileValue() == position)
+            sequence.setSequenceIfLater(sequenceNumber, position);
     }
 
     @Override
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.RandomDataInput;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import net.openhft.chronicle.core.io.ClosedIllegalStateException;
+import net.openhft.chronicle.queue.AppenderListener;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.wire.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An appender which stages excerpts in its own off-heap {@link StagingRing} rather than contending for the write lock.
+ * <p>
+ * A {@link StagingSequencer} on the queue's event loop drains the rings of all staging appenders into the queue in batches,
+ * so the index of an excerpt is only known once it has been appended. It is passed to the {@link AppenderListener}, if
+ * any, and is available from {@link #lastIndexAppended()}.
+ */
+final class StagingAppender extends AbstractCloseable implements ExcerptAppender {
+    @NotNull
+    private final SingleChronicleQueue queue;
+    @NotNull
+    private final StagingRing ring;
+    @Nullable
+    private final AppenderListener appenderListener;
+    @NotNull
+    private final Wire wire;
+    private final StagingContext context = new StagingContext();
+    private volatile long lastIndexAppended = Long.MIN_VALUE;
+    // set by the sequencer once it no longer drains the ring
+    private volatile boolean stopped = false;
+    // set by the producer while it writes to the ring
+    private volatile boolean writing = false;
+    private int count = 0;
+
+    StagingAppender(@NotNull final SingleChronicleQueue queue,
+                    @NotNull final StagingRing ring,
+                    @Nullable final AppenderListener appenderListener) {
+        this.queue = queue;
+        this.ring = ring;
+        this.appenderListener = appenderListener;
+        this.wire = queue.wireType().apply(Bytes.allocateElasticOnHeap());
+    }
+
+    @NotNull
+    StagingRing ring() {
+        return ring;
+    }
+
+    /**
+     * Called by the sequencer once an excerpt from this appender has been appended to the queue.
+     */
+    void onAppended(final Wire wire, final long index) {
+        lastIndexAppended = index;
+        if (appenderListener != null)
+            appenderListener.onExcerpt(wire, index);
+    }
+
+    @NotNull
+    @Override
+    public DocumentContext writingDocument(final boolean metaData) {
+        throwExceptionIfClosed();
+        if (metaData)
+            throw new UnsupportedOperationException("Meta data can't be staged");
+        if (count++ == 0) {
+            wire.clear();
+            context.isClosed = false;
+            context.rollbackOnClose = false;
+        }
+        return context;
+    }
+
+    @Override
+    public DocumentContext acquireWritingDocument(final boolean metaData) {
+        if (context.isOpen() && context.chainedElement())
+            return context;
+        return writingDocument(metaData);
+    }
+
+    @Override
+    public void writeBytes(@NotNull final BytesStore bytes) {
+        throwExceptionIfClosed();
+        stage(bytes, bytes.readPosition(), bytes.readRemaining());
+    }
+
+    private void stage(final RandomDataInput bytes, final long offset, final long length) {
+        if (length > ring.maxLength())
+            throw new IllegalArgumentException("An excerpt of " + length + " bytes is larger than the staging ring, see bufferCapacity()");
+        writing = true;
+        try {
+            throwExceptionIfStopped();
+            if (ring.tryWrite(bytes, offset, length))
+                return;
+
+            // the ring is full, wait for the sequencer to catch up
+            final long timeoutNS = TimeUnit.MILLISECONDS.toNanos(queue.timeoutMS);
+            final long start = System.nanoTime();
+            while (!ring.tryWrite(bytes, offset, length)) {
+                if (System.nanoTime() - start > timeoutNS)
+                    throw new UnrecoverableTimeoutException(new IllegalStateException("Staging ring still full after " + queue.timeoutMS + " ms"));
+                Jvm.nanoPause();
+                throwExceptionIfStopped();
+            }
+        } finally {
+            writing = false;
+        }
+    }
+
+    private void throwExceptionIfStopped() {
+        if (stopped)
+            throw new ClosedIllegalStateException("Excerpts can no longer be staged as the queue is closing");
+    }
+
+    /**
+     * Called by the sequencer before it frees the ring. Stops excerpts being staged, and waits for one being written.
+     */
+    void stopStaging() {
+        stopped = true;
+        while (writing)
+            Jvm.nanoPause();
+    }
+
+    /**
+     * @return the index of the last excerpt from this appender which has been appended to the queue
+     * @throws IllegalStateException if no excerpt from this appender has been appended yet
+     */
+    @Override
+    public long lastIndexAppended() {
+        final long index = lastIndexAppended;
+        if (index == Long.MIN_VALUE)
+            throw new IllegalStateException("No messages appended yet");
+        return index;
+    }
+
+    @Override
+    public int cycle() {
+        return queue.cycle();
+    }
+
+    @Override
+    public int sourceId() {
+        return queue.sourceId();
+    }
+
+    @NotNull
+    @Override
+    public SingleChronicleQueue queue() {
+        return queue;
+    }
+
+    /**
+     * @return null as excerpts are staged before they are written to the queue
+     */
+    @Nullable
+    @Override
+    public Wire wire() {
+        return null;
+    }
+
+    @Override
+    public boolean writingIsComplete() {
+        return context.isClosed;
+    }
+
+    @Override
+    public void rollbackIfNotComplete() {
+        context.rollbackIfNotComplete();
+    }
+
+    @Override
+    protected void performClose() {
+        // the ring is released by the sequencer once it has been drained
+    }
+
+    @Override
+    public String toString() {
+        return "StagingAppender{" +
+                "queue=" + queue +
+                ", lastIndexAppended=" + lastIndexAppended +
+                '}';
+    }
+
+    final class StagingContext implements WriteDocumentContext {
+        boolean isClosed = true;
+        private boolean rollbackOnClose = false;
+        private boolean chainedElement;
+
+        @Override
+        public void reset() {
+            isClosed = true;
+            rollbackOnClose = false;
+            chainedElement = false;
+        }
+
+        @Override
+        public int sourceId() {
+            return StagingAppender.this.sourceId();
+        }
+
+        @Override
+        public boolean isPresent() {
+            return false;
+        }
+
+        @Override
+        public Wire wire() {
+            return wire;
+        }
+
+        @Override
+        public boolean isMetaData() {
+            return false;
+        }
+
+        @Override
+        public void rollbackOnClose() {
+            this.rollbackOnClose = true;
+        }
+
+        @Override
+        public void close() {
+            if (chainedElement || isClosed)
+                return;
+            if (--count > 0)
+                return;
+            isClosed = true;
+            if (rollbackOnClose)
+                return;
+            final Bytes<?> bytes = wire.bytes();
+            stage(bytes, bytes.readPosition(), bytes.readRemaining());
+        }
+
+        /**
+         * @throws IndexNotAvailableException as the index is assigned when the excerpt is appended by the sequencer
+         */
+        @Override
+        public long index() {
+            throw new IndexNotAvailableException("Index is unavailable until a staged excerpt has been appended");
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !isClosed;
+        }
+
+        @Override
+        public boolean isNotComplete() {
+            return !isClosed;
+        }
+
+        @Override
+        public void start(boolean metaData) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean chainedElement() {
+            return chainedElement;
+        }
+
+        @Override
+        public void chainedElement(boolean chainedElement) {
+            this.chainedElement = chainedElement;
+        }
+
+        @Override
+        public void rollbackIfNotComplete() {
+            if (isClosed) return;
+            chainedElement = false;
+            count = 1;
+            rollbackOnClose = true;
+            close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.RandomDataInput;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+
+/**
+ * A single producer, single consumer ring of length prefixed excerpts held off heap.
+ * <p>
+ * The producer and consumer each keep a running count of the bytes they have written or read, and only share those
+ * counts, which are held at the start of the ring on separate cache lines.
+ */
+final class StagingRing extends AbstractCloseable {
+    private static final long WRITE_COUNT = 0;
+    private static final long READ_COUNT = 64;
+    private static final long DATA = 128;
+    private static final int LENGTH_SIZE = 4;
+    // marks the unused space at the end of the ring when an excerpt doesn't fit before wrapping
+    private static final int PADDING = -1;
+
+    private final BytesStore<?, Void> store;
+    private final long capacity;
+    // only accessed by the producer
+    private long writeCount;
+    // only accessed by the consumer
+    private long readCount;
+
+    StagingRing(final long capacity) {
+        this.capacity = capacity & ~7L;
+        if (this.capacity < 64)
+            throw new IllegalArgumentException("capacity must be at least 64 bytes, was " + capacity);
+        this.store = BytesStore.nativeStore(DATA + this.capacity);
+        this.store.zeroOut(0, DATA);
+
+        // the producer and consumer are different threads
+        singleThreadedCheckDisabled(true);
+    }
+
+    private static long sizeOf(final long length) {
+        return (LENGTH_SIZE + length + 7) & ~7L;
+    }
+
+    /**
+     * An excerpt which doesn't fit before the end of the ring is written at the start, after padding, so an excerpt is only
+     * guaranteed to fit in an empty ring wherever its write position is if it takes at most half the ring.
+     *
+     * @return the largest excerpt which can be staged
+     */
+    long maxLength() {
+        return ((capacity / 2) & ~7L) - LENGTH_SIZE;
+    }
+
+    /**
+     * Copies an excerpt into the ring. Called by the producer.
+     *
+     * @return false if there isn't enough free space in the ring
+     */
+    boolean tryWrite(final RandomDataInput bytes, final long offset, final long length) {
+        final long size = sizeOf(length);
+        long position = writeCount % capacity;
+        final long padding = position + size > capacity ? capacity - position : 0;
+        if (writeCount + padding + size - store.readVolatileLong(READ_COUNT) > capacity)
+            return false;
+
+        if (padding > 0) {
+            store.writeInt(DATA + position, PADDING);
+            position = 0;
+        }
+        store.writeInt(DATA + position, (int) length);
+        store.write(DATA + position + LENGTH_SIZE, bytes, offset, length);
+        writeCount += padding + size;
+        store.writeOrderedLong(WRITE_COUNT, writeCount);
+        return true;
+    }
+
+    /**
+     * @return true if the consumer has read everything written so far
+     */
+    boolean isEmpty() {
+        return readCount == store.readVolatileLong(WRITE_COUNT);
+    }
+
+    /**
+     * Passes up to {@code maxExcerpts} staged excerpts to the reader, in the order they were written, then frees their space.
+     * Called by the consumer.
+     *
+     * @return the number of excerpts read
+     */
+    int drain(final int maxExcerpts, final Reader reader) {
+        final long written = store.readVolatileLong(WRITE_COUNT);
+        int count = 0;
+        try {
+            while (readCount < written && count < maxExcerpts) {
+                final long position = readCount % capacity;
+                final int length = store.readInt(DATA + position);
+                if (length == PADDING) {
+                    readCount += capacity - position;
+                    continue;
+                }
+                reader.onExcerpt(store, DATA + position + LENGTH_SIZE, length);
+                readCount += sizeOf(length);
+                count++;
+            }
+        } finally {
+            store.writeOrderedLong(READ_COUNT, readCount);
+        }
+        return count;
+    }
+
+    @Override
+    protected void performClose() {
+        store.releaseLast();
+    }
+
+    @FunctionalInterface
+    interface Reader {
+        void onExcerpt(BytesStore<?, ?> store, long offset, int length);
+    }
+}
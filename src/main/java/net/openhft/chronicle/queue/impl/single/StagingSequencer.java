@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import net.openhft.chronicle.core.io.ClosedIllegalStateException;
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.core.threads.EventHandler;
+import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptBatch;
+import net.openhft.chronicle.wire.DocumentContext;
+import net.openhft.chronicle.wire.Wire;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Drains the rings of {@link StagingAppender}s into the queue, each ring in batches written under a single acquisition of the
+ * write lock. Runs on the queue's event loop, and when the queue closes, on the closing thread, which first stops the
+ * staging appenders and then appends everything they staged before freeing their rings.
+ */
+final class StagingSequencer extends AbstractCloseable implements EventHandler {
+    static final int MAX_BATCH = 256;
+
+    @NotNull
+    private final SingleChronicleQueue queue;
+    private final List<StagingAppender> appenders = new CopyOnWriteArrayList<>();
+    private final StagingRing.Reader reader = this::append;
+    // guarded by this
+    private ExcerptAppender appender;
+    private ExcerptBatch batch;
+    private StagingAppender current;
+    private boolean shutdown;
+
+    StagingSequencer(@NotNull final SingleChronicleQueue queue) {
+        this.queue = queue;
+        // appenders are registered by producer threads
+        singleThreadedCheckDisabled(true);
+    }
+
+    synchronized void register(@NotNull final StagingAppender stagingAppender) {
+        throwExceptionIfClosed();
+        if (shutdown)
+            throw new ClosedIllegalStateException("The event loop staged excerpts are appended on has stopped");
+        if (appender == null) {
+            appender = queue.createAppender();
+            // used on the event loop, and on the thread closing the queue
+            appender.singleThreadedCheckDisabled(true);
+        }
+        appenders.add(stagingAppender);
+    }
+
+    @Override
+    public synchronized boolean action() throws InvalidEventHandlerException {
+        if (shutdown)
+            throw InvalidEventHandlerException.reusable();
+        // the queue drains and frees the rings as it closes
+        if (queue.isClosing())
+            return false;
+
+        boolean busy = false;
+        for (StagingAppender stagingAppender : appenders) {
+            final StagingRing ring = stagingAppender.ring();
+            if (ring.isEmpty()) {
+                if (stagingAppender.isClosing()) {
+                    appenders.remove(stagingAppender);
+                    ring.close();
+                }
+                continue;
+            }
+            drain(stagingAppender);
+            busy = true;
+        }
+        return busy;
+    }
+
+    // called holding the lock
+    private void drain(final StagingAppender stagingAppender) {
+        current = stagingAppender;
+        try (ExcerptBatch batch = appender.writingBatch(MAX_BATCH)) {
+            this.batch = batch;
+            stagingAppender.ring().drain(MAX_BATCH, reader);
+        } finally {
+            this.batch = null;
+            current = null;
+        }
+    }
+
+    private void append(final BytesStore<?, ?> store, final long offset, final int length) {
+        final long index;
+        final Wire wire;
+        final long start;
+        try (DocumentContext dc = batch.writingDocument()) {
+            index = dc.index();
+            wire = dc.wire();
+            start = wire.bytes().writePosition();
+            wire.bytes().write(store, offset, length);
+        }
+        final Bytes<?> bytes = wire.bytes();
+        final long rp = bytes.readPosition();
+        final long rl = bytes.readLimit();
+        try {
+            bytes.readPositionRemaining(start, length);
+            current.onAppended(wire, index);
+        } finally {
+            bytes.readLimit(rl);
+            bytes.readPosition(rp);
+        }
+    }
+
+    @Override
+    public void loopFinished() {
+        shutdown();
+    }
+
+    /**
+     * Stops every staging appender, appends what each has staged, then frees its ring, which its producer can no longer
+     * write to.
+     */
+    private synchronized void shutdown() {
+        if (shutdown)
+            return;
+        shutdown = true;
+        for (StagingAppender stagingAppender : appenders)
+            stagingAppender.stopStaging();
+        for (StagingAppender stagingAppender : appenders) {
+            final StagingRing ring = stagingAppender.ring();
+            try {
+                while (!ring.isEmpty())
+                    drain(stagingAppender);
+            } catch (RuntimeException e) {
+                Jvm.warn().on(getClass(), "Staged excerpts were lost as they couldn't be appended to " + queue.fileAbsolutePath(), e);
+            }
+            ring.close();
+        }
+        appenders.clear();
+        Closeable.closeQuietly(appender);
+    }
+
+    @Override
+    protected void performClose() {
+        // called by the queue before it closes its appenders
+        shutdown();
+    }
+}
@@ -23,12 +23,14 @@ import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.StackTrace;
 import net.openhft.chronicle.core.annotation.UsedViaReflection;
 import net.openhft.chronicle.core.io.AbstractCloseable;
+import net.openhft.chronicle.core.io.Closeable;
 import net.openhft.chronicle.core.io.ClosedIllegalStateException;
 import net.openhft.chronicle.core.io.IORuntimeException;
 import net.openhft.chronicle.core.threads.InterruptedRuntimeException;
 import net.openhft.chronicle.core.values.LongValue;
 import net.openhft.chronicle.queue.ChronicleQueue;
 import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptBatch;
 import net.openhft.chronicle.queue.QueueSystemProperties;
 import net.openhft.chronicle.queue.impl.ExcerptContext;
 import net.openhft.chronicle.queue.impl.WireStorePool;
@@ -65,6 +67,8 @@ class StoreAppender extends AbstractCloseable
 
     @NotNull
     private final StoreAppenderContext context;
+    @NotNull
+    private final StoreAppenderBatch batch;
     private final WireStorePool storePool;
     private final boolean checkInterrupts;
     @UsedViaReflection
@@ -83,7 +87,12 @@ class StoreAppender extends AbstractCloseable
     private Pretoucher pretoucher = null;
     private MicroToucher microtoucher = null;
     private Wire bufferWire = null;
+    // only used if the queue keeps a time index
+    @Nullable
+    private TimeIndex.Writer timeIndexWriter = null;
     private int count = 0;
+    // the header after the last one accounted for when scanning for lock-free appends
+    private long scanPosition;
 
     StoreAppender(@NotNull final SingleChronicleQueue queue,
                   @NotNull final WireStorePool storePool,
@@ -94,6 +103,7 @@ class StoreAppender extends AbstractCloseable
         this.writeLock = queue.writeLock();
         this.appendLock = queue.appendLock();
         this.context = new StoreAppenderContext();
+        this.batch = new StoreAppenderBatch();
         this.finalizer = Jvm.isResourceTracing() ? new Finalizer() : null;
 
         try {
@@ -216,6 +226,8 @@ class StoreAppender extends AbstractCloseable
         if (pretoucher != null)
             pretoucher.close();
 
+        Closeable.closeQuietly(timeIndexWriter, microtoucher);
+
         if (store != null) {
             storePool.closeStore(store);
             store = null;
@@ -224,6 +236,7 @@ class StoreAppender extends AbstractCloseable
         storePool.close();
 
         pretoucher = null;
+        timeIndexWriter = null;
         wireForIndex = null;
         wire = null;
         bufferWire = null;
@@ -291,6 +304,10 @@ class StoreAppender extends AbstractCloseable
         this.lastIndex = index;
     }
 
+    long lastIndex() {
+        return lastIndex;
+    }
+
     @Override
     public boolean recordHistory() {
         return sourceId() != 0;
@@ -423,6 +440,11 @@ class StoreAppender extends AbstractCloseable
             return context;
         }
 
+        if (batch.open) {
+            batch.openNext(metaData);
+            return context;
+        }
+
         if (queue.doubleBuffer && writeLock.locked() && !metaData) {
             prepareDoubleBuffer();
         } else {
@@ -454,6 +476,34 @@ class StoreAppender extends AbstractCloseable
         return context;
     }
 
+    @NotNull
+    @Override
+    public ExcerptBatch writingBatch(final int maxMessages) {
+        throwExceptionIfClosed();
+        if (maxMessages <= 0)
+            throw new IllegalArgumentException("maxMessages must be positive, was " + maxMessages);
+        if (batch.open || count > 0)
+            throw new IllegalStateException("Cannot start a batch while a document or batch is open");
+        checkAppendLock();
+
+        writeLock.lock();
+        try {
+            int cycle = queue.cycle();
+            if (wire == null)
+                setWireIfNull(cycle);
+
+            if (this.cycle != cycle)
+                rollCycleTo(cycle);
+
+            resetPosition(false);
+        } catch (RuntimeException e) {
+            writeLock.unlock();
+            throw e;
+        }
+        batch.open(maxMessages);
+        return batch;
+    }
+
     private void prepareDoubleBuffer() {
         context.isClosed = false;
         context.rollbackOnClose = false;
@@ -525,7 +575,7 @@ class StoreAppender extends AbstractCloseable
         // writePosition points at the last record in the queue, so we can just skip it and we're ready for write
         long pos = positionOfHeader;
         long lastPos = store.writePosition();
-        if (pos < lastPos) {
+        if (pos < lastPos && !queue.lockFreeAppend) {
             // queue moved since we last touched it - recalculate header number
 
             try {
@@ -538,12 +588,170 @@ class StoreAppender extends AbstractCloseable
         assert header != NOT_INITIALIZED;
         lastPos += lengthOf(bytes.readVolatileInt(lastPos)) + SPB_HEADER_SIZE;
         bytes.writePosition(lastPos);
-        return wire.enterHeader(safeLength);
+        final long position = wire.enterHeader(safeLength);
+        if (queue.lockFreeAppend)
+            // other producers may have reserved excerpts after the last published one
+            wire.headerNumber(lastIndexBefore(position));
+        return position;
+    }
+
+    /**
+     * @return the index of the last data excerpt before {@code position}, counting on from the last published excerpt
+     */
+    private long lastIndexBefore(final long position) {
+        final Bytes<?> bytes = wire.bytes();
+        long index = startScan(position);
+        long pos = scanPosition;
+        while (pos < position) {
+            final int header = headerWithLength(bytes, pos);
+            if (header == 0 || isEndOfFile(header))
+                break;
+            if (isData(header))
+                index++;
+            pos = afterHeader(pos, header);
+        }
+        return index;
+    }
+
+    /**
+     * Appends without acquiring the write lock, by reserving the first free header with a CAS. The header is reserved as
+     * incomplete with the length of the excerpt, so other producers can reserve the headers after it while the payload is
+     * copied in, and tailers wait for it to be completed. There is no recovery for a header left incomplete by a producer
+     * which died while copying, so tailers wait at it for good.
+     *
+     * @return false if the excerpt can't be appended this way and should be written under the write lock
+     */
+    private boolean writeBytesLockFree(@NotNull final BytesStore bytes) {
+        final long length = bytes.readRemaining();
+        // a length of zero would look like a header written under the write lock
+        if (length <= 0 || length > queue.overlapSize() || length > LENGTH_MASK)
+            return false;
+
+        final int cycle = queue.cycle();
+        if (wire == null || this.cycle != cycle || wire.headerNumber() == Long.MIN_VALUE) {
+            // creating or rolling to a cycle still needs the write lock
+            writeLock.lock();
+            try {
+                if (wire == null)
+                    setWireIfNull(cycle);
+
+                if (this.cycle != cycle)
+                    rollCycleTo(cycle);
+
+                resetPosition(false);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        assert wire != null && store != null;
+        final Bytes<?> wireBytes = wire.bytes();
+        long index = startScan(Long.MAX_VALUE);
+        long pos = scanPosition;
+        final int reserved = NOT_COMPLETE | (int) length;
+        for (; ; ) {
+            final int header = headerWithLength(wireBytes, pos);
+            if (header == 0) {
+                if (wireBytes.compareAndSwapInt(pos, 0, reserved))
+                    break;
+                continue;
+            }
+            if (isEndOfFile(header))
+                return false;
+            if (isData(header))
+                index++;
+            pos = afterHeader(pos, header);
+        }
+
+        wireBytes.write(pos + SPB_HEADER_SIZE, bytes, bytes.readPosition(), length);
+        wireBytes.writeOrderedInt(pos, (int) length);
+        queue.appendWaiters.signal();
+        index++;
+
+        positionOfHeader = pos;
+        lastPosition = pos;
+        wire.headerNumber(index);
+        lastIndex(index);
+
+        store.writePosition(pos);
+        final long sequenceNumber = queue.rollCycle().toSequenceNumber(index);
+        store.lastSequenceNumberAt(sequenceNumber, pos);
+        queue.lastIndexCommitted(index);
+        indexTime(index);
+        if (!queue.backgroundIndexing() && store.indexable(sequenceNumber)) {
+            writeLock.lock();
+            try {
+                // index entries may be added out of order, so don't skip ones behind nextEntryToBeIndexed
+                store.indexing.setPositionForSequenceNumber(this, sequenceNumber, pos);
+            } catch (StreamCorruptedException e) {
+                throw new AssertionError(e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds a position before {@code limit} where the index of the last data excerpt is known, preferring the last published
+     * excerpt, and sets {@link #scanPosition} to the header after it.
+     *
+     * @return the index of the last data excerpt before {@link #scanPosition}
+     */
+    private long startScan(final long limit) {
+        long pos = positionOfHeader;
+        long index = wire.headerNumber();
+        for (int i = 0; i < 128; i++) {
+            final long published = store.writePosition();
+            if (published <= pos || published >= limit)
+                break;
+            final long sequence = store.lastSequenceNumberAt(published);
+            if (sequence == Sequence.NOT_FOUND_RETRY)
+                continue;
+            if (sequence >= 0) {
+                pos = published;
+                index = queue.rollCycle().toIndex(cycle, sequence);
+            }
+            break;
+        }
+        final int header = headerWithLength(wire.bytes(), pos);
+        scanPosition = header == 0 || isEndOfFile(header) ? pos : afterHeader(pos, header);
+        return index;
+    }
+
+    /**
+     * @return the header at {@code position}, waiting for one written under the write lock to be completed so its length is known
+     */
+    private int headerWithLength(final Bytes<?> bytes, final long position) {
+        int header = bytes.readVolatileInt(position);
+        if (!isNotComplete(header) || lengthOf(header) != 0 || isEndOfFile(header))
+            return header;
+
+        final long timeoutNS = TimeUnit.MILLISECONDS.toNanos(timeoutMS());
+        final long start = System.nanoTime();
+        while (isNotComplete(header) && lengthOf(header) == 0 && !isEndOfFile(header)) {
+            if (System.nanoTime() - start > timeoutNS)
+                throw new UnrecoverableTimeoutException(new IllegalStateException("Header at " + position + " was not completed after " + timeoutMS() + " ms"));
+            Jvm.nanoPause();
+            header = bytes.readVolatileInt(position);
+        }
+        return header;
+    }
+
+    private long afterHeader(final long position, final int header) {
+        long next = position + SPB_HEADER_SIZE + lengthOf(header);
+        if (wire.usePadding())
+            next += BytesUtil.padOffset(next);
+        return next;
     }
 
     private void openContext(final boolean metaData, final long safeLength) {
         assert wire != null;
         this.positionOfHeader = writeHeader(wire, safeLength); // sets wire.bytes().writePosition = position + 4;
+        initContext(metaData);
+    }
+
+    private void initContext(final boolean metaData) {
         context.isClosed = false;
         context.rollbackOnClose = false;
         context.buffered = false;
@@ -585,7 +793,10 @@ class StoreAppender extends AbstractCloseable
     @Override
     public void writeBytes(@NotNull final BytesStore bytes) {
         throwExceptionIfClosed();
+        throwExceptionIfBatchOpen();
         checkAppendLock();
+        if (queue.lockFreeAppend && writeBytesLockFree(bytes))
+            return;
         writeLock.lock();
         try {
             int cycle = queue.cycle();
@@ -606,11 +817,14 @@ class StoreAppender extends AbstractCloseable
             lastPosition = positionOfHeader;
             store.writePosition(positionOfHeader);
             writeIndexForPosition(lastIndex, positionOfHeader);
+            queue.lastIndexCommitted(lastIndex);
+            indexTime(lastIndex);
         } catch (StreamCorruptedException e) {
             throw new AssertionError(e);
         } finally {
             writeLock.unlock();
         }
+        queue.appendWaiters.signal();
     }
 
     /**
@@ -627,6 +841,7 @@ class StoreAppender extends AbstractCloseable
      */
     public void writeBytes(final long index, @NotNull final BytesStore bytes) {
         throwExceptionIfClosed();
+        throwExceptionIfBatchOpen();
         checkAppendLock();
         writeLock.lock();
         try {
@@ -636,6 +851,12 @@ class StoreAppender extends AbstractCloseable
         }
     }
 
+    // the write lock is held by the batch, and isn't reentrant
+    private void throwExceptionIfBatchOpen() {
+        if (batch.open)
+            throw new IllegalStateException("Cannot write bytes while a batch is open, use the batch's writingDocument()");
+    }
+
     /**
      * Appends bytes without write lock. Should only be used if write lock is acquired externally. Never use without write locking as it WILL corrupt
      * the queue file and cause data loss.
@@ -681,6 +902,9 @@ class StoreAppender extends AbstractCloseable
         if (!isIndex) {
             throw new IllegalStateException("index: " + index + ", header: " + headerNumber);
         }
+
+        if (cycle < queue.lastCycle())
+            queue.onWrittenToEarlierCycle(cycle);
     }
 
     private void writeBytesInternal(@NotNull final BytesStore bytes, boolean metadata) {
@@ -772,7 +996,9 @@ class StoreAppender extends AbstractCloseable
 
         if (!suppressEOF) {
             assert queue.writeLock().locked();
-            store.writeEOF(wire, timeoutMS());
+            final boolean wroteEOF = store.writeEOF(wire, timeoutMS());
+            if (wroteEOF || queue.adaptiveIndexSpacing())
+                measureCycle(wroteEOF);
         }
 
         int lastExistingCycle = queue.lastCycle();
@@ -785,10 +1011,51 @@ class StoreAppender extends AbstractCloseable
         }
     }
 
+    /**
+     * Measures the cycle this appender is leaving, to choose the index spacing of the next, and records its summary if
+     * summaries are tracked and this appender has just written its end of file marker.
+     */
+    private void measureCycle(final boolean wroteEOF) {
+        final CycleSummaries cycleSummaries = wroteEOF ? queue.cycleSummaries() : null;
+        if (cycleSummaries == null && !queue.adaptiveIndexSpacing())
+            return;
+        try {
+            final long count = store.exactLastSequenceNumber(this) + 1;
+            final long position = store.writePosition();
+            final long length = position <= 0
+                    ? 0
+                    : position + lengthOf(wire.bytes().readVolatileInt(position)) + SPB_HEADER_SIZE;
+            if (cycleSummaries != null)
+                cycleSummaries.onClosed(cycle, count, length, queue.time().currentTimeMillis());
+            if (queue.adaptiveIndexSpacing())
+                // leave out the header and indexes before the first excerpt
+                queue.onCycleMeasured(count, length - store.firstExcerptPosition(this));
+        } catch (StreamCorruptedException | RuntimeException e) {
+            // the cycle is searched instead, and the next cycle keeps the current spacing
+            Jvm.warn().on(getClass(), "Unable to measure cycle " + cycle, e);
+        }
+    }
+
+    /**
+     * Records when the excerpt at {@code index} was written in the time index, if the queue keeps one.
+     */
+    private void indexTime(final long index) {
+        final TimeIndex timeIndex = queue.timeIndex();
+        if (timeIndex == null)
+            return;
+        if (timeIndexWriter == null)
+            timeIndexWriter = timeIndex.newWriter();
+        timeIndexWriter.onAppended(queue.rollCycle().toCycle(index), queue.rollCycle().toSequenceNumber(index));
+    }
+
     // throws UnrecoverableTimeoutException
     void writeIndexForPosition(final long index, final long position) throws StreamCorruptedException {
         long sequenceNumber = queue.rollCycle().toSequenceNumber(index);
-        store.setPositionForSequenceNumber(this, sequenceNumber, position);
+        if (queue.backgroundIndexing())
+            // the queue's BackgroundIndexer adds the index entry
+            store.lastSequenceNumberAt(sequenceNumber, position);
+        else
+            store.setPositionForSequenceNumber(this, sequenceNumber, position);
     }
 
     boolean checkIndex(final long index, final long position) {
@@ -849,6 +1116,12 @@ class StoreAppender extends AbstractCloseable
         final Bytes<?> bytes = wire.bytes();
         if (bytes.bytesStore() instanceof MappedBytesStore) {
             MappedBytesStore mbs = (MappedBytesStore) bytes.bytesStore();
+            final GroupCommitSyncer groupCommitSyncer = queue.groupCommitSyncer();
+            if (groupCommitSyncer != null && lastIndex != Long.MIN_VALUE) {
+                // waits for a background msync which may cover other appenders too
+                groupCommitSyncer.sync(mbs, bytes.writePosition(), lastIndex);
+                return;
+            }
             mbs.syncUpTo(bytes.writePosition());
             queue.lastIndexMSynced(lastIndex);
         }
@@ -1022,13 +1295,19 @@ class StoreAppender extends AbstractCloseable
 
             if (!metaData) {
                 lastIndex(wire.headerNumber());
-                store.writePosition(positionOfHeader);
-                if (lastIndex != Long.MIN_VALUE) {
-                    writeIndexForPosition(lastIndex, positionOfHeader);
-                    if (queue.appenderListener != null) {
-                        callAppenderListener();
+                if (batch.open) {
+                    batch.onExcerpt(lastIndex, positionOfHeader);
+                } else {
+                    store.writePosition(positionOfHeader);
+                    if (lastIndex != Long.MIN_VALUE) {
+                        writeIndexForPosition(lastIndex, positionOfHeader);
+                        queue.lastIndexCommitted(lastIndex);
+                        indexTime(lastIndex);
                     }
                 }
+                if (lastIndex != Long.MIN_VALUE && queue.appenderListener != null) {
+                    callAppenderListener();
+                }
             }
         }
 
@@ -1041,6 +1320,11 @@ class StoreAppender extends AbstractCloseable
             Bytes<?> bytes = wire.bytes();
             bytes.writePositionForHeader(true);
             isClosed = true;
+            if (batch.open) {
+                // the write lock is held until the batch is closed
+                batch.nextHeaderPosition = bytes.writePosition();
+                return;
+            }
             if (unlock) {
                 try {
                     writeLock.unlock();
@@ -1048,6 +1332,7 @@ class StoreAppender extends AbstractCloseable
                     Jvm.warn().on(getClass(), "Exception while unlocking: ", ex);
                 }
             }
+            queue.appendWaiters.signal();
         }
 
         private void callAppenderListener() {
@@ -1072,7 +1357,8 @@ class StoreAppender extends AbstractCloseable
                 try {
                     for (long i = positionOfHeader; i <= bytes.writePosition(); i++)
                         bytes.writeByte(i, (byte) 0);
-                    long lastPosition = StoreAppender.this.lastPosition;
+                    // within a batch, the next excerpt is written where this one was
+                    long lastPosition = batch.open ? positionOfHeader : StoreAppender.this.lastPosition;
                     position0(lastPosition, lastPosition, bytes);
                     ((AbstractWire) wire).forceNotInsideHeader();
                 } catch (BufferOverflowException | IllegalStateException e) {
@@ -1146,4 +1432,112 @@ class StoreAppender extends AbstractCloseable
             close();
         }
     }
+
+    /**
+     * Holds the write lock across a number of excerpts. Each excerpt's header is completed as it is closed,
+     * but the write position and last sequence number of the store are only published when the batch is closed.
+     */
+    final class StoreAppenderBatch implements ExcerptBatch {
+
+        boolean open = false;
+        long nextHeaderPosition = Long.MIN_VALUE;
+        private int maxMessages;
+        private int started;
+        private long pendingIndex = Long.MIN_VALUE;
+        private long pendingPosition = Long.MIN_VALUE;
+
+        void open(final int maxMessages) {
+            this.maxMessages = maxMessages;
+            this.started = 0;
+            this.nextHeaderPosition = Long.MIN_VALUE;
+            this.pendingIndex = Long.MIN_VALUE;
+            this.pendingPosition = Long.MIN_VALUE;
+            this.open = true;
+        }
+
+        @NotNull
+        @Override
+        public DocumentContext writingDocument(final boolean metaData) {
+            if (!open)
+                throw new IllegalStateException("Batch is closed");
+            if (context.isOpen())
+                throw new IllegalStateException("The previous excerpt in the batch has not been closed");
+            return StoreAppender.this.writingDocument(metaData);
+        }
+
+        void openNext(final boolean metaData) {
+            if (started >= maxMessages)
+                throw new IllegalStateException("Batch is full, maxMessages=" + maxMessages);
+            assert wire != null;
+            final long safeLength = queue.overlapSize();
+            if (nextHeaderPosition == Long.MIN_VALUE) {
+                openContext(metaData, safeLength);
+            } else {
+                // the previous excerpt is complete so the next header goes straight after it
+                wire.bytes().writePosition(nextHeaderPosition);
+                final long position = wire.enterHeader(safeLength);
+                if (queue.lockFreeAppend)
+                    wire.headerNumber(lastIndexBefore(position));
+                positionOfHeader = position;
+                initContext(metaData);
+            }
+            started++;
+
+            // Move readPosition to the start of the context. i.e. readRemaining() == 0
+            wire.bytes().readPosition(wire.bytes().writePosition());
+        }
+
+        void onExcerpt(final long index, final long position) throws StreamCorruptedException {
+            pendingIndex = index;
+            pendingPosition = position;
+            if (index != Long.MIN_VALUE) {
+                if (!queue.backgroundIndexing())
+                    store.indexPositionForSequenceNumber(StoreAppender.this, queue.rollCycle().toSequenceNumber(index), position);
+                indexTime(index);
+            }
+
+            // don't let the published write position fall too far behind a large batch
+            if (position - store.writePosition() > queue.overlapSize())
+                publish();
+        }
+
+        private void publish() throws StreamCorruptedException {
+            if (pendingPosition == Long.MIN_VALUE)
+                return;
+            store.writePosition(pendingPosition);
+            if (pendingIndex != Long.MIN_VALUE) {
+                writeIndexForPosition(pendingIndex, pendingPosition);
+                queue.lastIndexCommitted(pendingIndex);
+            }
+            pendingPosition = Long.MIN_VALUE;
+        }
+
+        @Override
+        public int maxMessages() {
+            return maxMessages;
+        }
+
+        @Override
+        public int count() {
+            return started;
+        }
+
+        @Override
+        public void close() {
+            if (!open)
+                return;
+            try {
+                if (context.isOpen())
+                    context.rollbackIfNotComplete();
+                publish();
+            } catch (StreamCorruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                open = false;
+                nextHeaderPosition = Long.MIN_VALUE;
+                writeLock.unlock();
+            }
+            queue.appendWaiters.signal();
+        }
+    }
 }
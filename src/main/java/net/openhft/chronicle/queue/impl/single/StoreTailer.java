@@ -19,8 +19,11 @@
 package net.openhft.chronicle.queue.impl.single;
 
 import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.BytesUtil;
 import net.openhft.chronicle.bytes.MappedBytes;
 import net.openhft.chronicle.bytes.MappedBytesStore;
+import net.openhft.chronicle.bytes.PointerBytesStore;
 import net.openhft.chronicle.bytes.util.DecoratedBufferUnderflowException;
 import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.annotation.PackageLocal;
@@ -39,14 +42,22 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.EOFException;
 import java.io.File;
+import java.io.IOException;
 import java.io.StreamCorruptedException;
 import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ObjLongConsumer;
 
 import static net.openhft.chronicle.queue.TailerDirection.*;
 import static net.openhft.chronicle.queue.TailerState.*;
 import static net.openhft.chronicle.queue.impl.single.ScanResult.*;
 import static net.openhft.chronicle.wire.NoDocumentContext.INSTANCE;
+import static net.openhft.chronicle.wire.Wires.SPB_HEADER_SIZE;
+import static net.openhft.chronicle.wire.Wires.isData;
 import static net.openhft.chronicle.wire.Wires.isEndOfFile;
+import static net.openhft.chronicle.wire.Wires.isNotComplete;
+import static net.openhft.chronicle.wire.Wires.lengthOf;
 
 /**
  * Tailer
@@ -56,6 +67,14 @@ class StoreTailer extends AbstractCloseable
     static final int INDEXING_LINEAR_SCAN_THRESHOLD = 70;
     static final ScopedResourcePool<StringBuilder> SBP = StringBuilderPool.createThreadLocal(1);
     static final EOFException EOF_EXCEPTION = new EOFException();
+    // returned by nextDataInCycle()
+    private static final long NO_EXCERPT = -1;
+    private static final long USE_READING_DOCUMENT = -2;
+    // how readingDocument(timeout, unit) waits: spin, then yield, then park until an appender in this process commits,
+    // waking to poll for appends by other processes at least every MAX_PARK_NS
+    private static final long SPIN_NS = Jvm.getInteger("chronicle.queue.tailerSpinUs", 20) * 1_000L;
+    private static final long YIELD_NS = Jvm.getInteger("chronicle.queue.tailerYieldUs", 100) * 1_000L;
+    private static final long MAX_PARK_NS = Jvm.getInteger("chronicle.queue.tailerMaxParkUs", 1_000) * 1_000L;
     @NotNull
     private final SingleChronicleQueue queue;
     private final WireStorePool storePool;
@@ -251,6 +270,188 @@ class StoreTailer extends AbstractCloseable
         return INSTANCE;
     }
 
+    @NotNull
+    @Override
+    public DocumentContext readingDocument(final long timeout, @NotNull final TimeUnit unit) {
+        final long start = System.nanoTime();
+        final long timeoutNS = unit.toNanos(timeout);
+        long parkNS = 10_000;
+        boolean waiting = false;
+        DocumentContext dc = readingDocument();
+        try {
+            while (!dc.isPresent()) {
+                final long waited = System.nanoTime() - start;
+                if (waited >= timeoutNS)
+                    break;
+                if (waited < SPIN_NS) {
+                    Jvm.nanoPause();
+                } else if (waited < YIELD_NS) {
+                    Thread.yield();
+                } else if (!waiting) {
+                    // before polling again, so a commit after the poll unparks this thread
+                    queue.appendWaiters.add(Thread.currentThread());
+                    waiting = true;
+                } else {
+                    LockSupport.parkNanos(this, Math.min(timeoutNS - waited, parkNS));
+                    parkNS = Math.min(parkNS * 2, MAX_PARK_NS);
+                }
+                // poll the next header word and only go through the state machine if it has changed
+                if (nextDataInCycle() != NO_EXCERPT)
+                    dc = readingDocument();
+            }
+        } finally {
+            if (waiting)
+                queue.appendWaiters.remove(Thread.currentThread());
+        }
+        return dc;
+    }
+
+    @Override
+    public boolean readBytesSlice(@NotNull final PointerBytesStore slice) {
+        throwExceptionIfClosed();
+
+        final long position = nextDataInCycle();
+        if (position == NO_EXCERPT)
+            return false;
+        if (position == USE_READING_DOCUMENT)
+            return ExcerptTailer.super.readBytesSlice(slice);
+
+        final Bytes<?> bytes = privateWire().bytes();
+        final long start = position + SPB_HEADER_SIZE;
+        final int length = lengthOf(bytes.bytesStore().readInt(position));
+        slice.set(bytes.bytesStore().addressForRead(start), length);
+        bytes.readLimitToCapacity();
+        bytes.readPosition(start + length);
+        excerptRead();
+        return true;
+    }
+
+    @Override
+    public int forEachExcerpt(final int maxExcerpts, @NotNull final ObjLongConsumer<Bytes<?>> consumer) {
+        throwExceptionIfClosed();
+
+        int count = 0;
+        while (count < maxExcerpts) {
+            final long position = nextDataInCycle();
+            if (position == NO_EXCERPT)
+                break;
+            if (position == USE_READING_DOCUMENT) {
+                try (DocumentContext dc = readingDocument()) {
+                    if (!dc.isPresent())
+                        break;
+                    consumer.accept(dc.wire().bytes(), dc.index());
+                }
+            } else {
+                final Bytes<?> bytes = privateWire().bytes();
+                final long end = enterExcerpt(bytes, position);
+                try {
+                    consumer.accept(bytes, index());
+                } finally {
+                    exitExcerpt(bytes, end);
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int readBatch(final int maxExcerpts, @NotNull final BatchHandler handler) {
+        throwExceptionIfClosed();
+
+        int count = 0;
+        while (count < maxExcerpts) {
+            final long position = nextDataInCycle();
+            if (position == NO_EXCERPT)
+                break;
+            if (position == USE_READING_DOCUMENT) {
+                // only the first excerpt may need the tailer to move, e.g. to the next cycle
+                if (count > 0)
+                    break;
+                try (DocumentContext dc = readingDocument()) {
+                    if (!dc.isPresent())
+                        break;
+                    count++;
+                    if (!handler.onExcerpt(dc.wire(), dc.index()))
+                        break;
+                }
+                continue;
+            }
+
+            count++;
+            final Wire wire = privateWire();
+            final long end = enterExcerpt(wire.bytes(), position);
+            final boolean more;
+            try {
+                more = handler.onExcerpt(wire, index());
+            } finally {
+                exitExcerpt(wire.bytes(), end);
+            }
+            if (!more)
+                break;
+        }
+        return count;
+    }
+
+    /**
+     * Limits the bytes to the excerpt with its header at {@code position}.
+     *
+     * @return the end of the excerpt
+     */
+    private static long enterExcerpt(final Bytes<?> bytes, final long position) {
+        final long start = position + SPB_HEADER_SIZE;
+        final long end = start + lengthOf(bytes.bytesStore().readInt(position));
+        bytes.readLimit(end);
+        bytes.readPosition(start);
+        return end;
+    }
+
+    private void exitExcerpt(final Bytes<?> bytes, final long end) {
+        bytes.readLimitToCapacity();
+        bytes.readPosition(end);
+        excerptRead();
+    }
+
+    /**
+     * Finds the next data excerpt in the current mapping, skipping meta data, without changing the state of this tailer.
+     *
+     * @return the position of its header, {@link #NO_EXCERPT} if the next excerpt is not complete yet, or
+     * {@link #USE_READING_DOCUMENT} where only {@link #readingDocument()} can move on, e.g. at the end of a cycle
+     */
+    private long nextDataInCycle() {
+        if (state != FOUND_IN_CYCLE || direction != FORWARD || readAfterReplicaAcknowledged)
+            return USE_READING_DOCUMENT;
+        final Wire wire = privateWire();
+        if (wire == null)
+            return USE_READING_DOCUMENT;
+
+        final Bytes<?> bytes = wire.bytes();
+        final BytesStore<?, ?> store = bytes.bytesStore();
+        long position = bytes.readPosition();
+        while (true) {
+            if (wire.usePadding())
+                position += BytesUtil.padOffset(position);
+            if (!store.inside(position, SPB_HEADER_SIZE))
+                return USE_READING_DOCUMENT;
+            final int header = store.readVolatileInt(position);
+            if (isEndOfFile(header))
+                return USE_READING_DOCUMENT;
+            if (header == 0 || isNotComplete(header))
+                return NO_EXCERPT;
+            if (!store.inside(position, SPB_HEADER_SIZE + lengthOf(header)))
+                return USE_READING_DOCUMENT;
+            if (isData(header))
+                return position;
+            position += SPB_HEADER_SIZE + lengthOf(header);
+        }
+    }
+
+    private void excerptRead() {
+        readingDocumentFound = true;
+        lastReadIndex = index();
+        incrementIndex();
+    }
+
     private void readingDocumentDBUE(DecoratedBufferUnderflowException e) {
         if (queue.isReadOnly()) {
             Jvm.warn().on(StoreTailer.class,
@@ -1098,7 +1299,7 @@ class StoreTailer extends AbstractCloseable
                     windBackCycle(cycle);
                     return;
                 } else if (seq > 0 && striding) {
-                    seq -= seq % rollCycle.defaultIndexSpacing();
+                    seq -= seq % (store == null ? rollCycle.defaultIndexSpacing() : store.indexing.indexSpacing());
                 }
                 break;
         }
@@ -1208,6 +1409,9 @@ class StoreTailer extends AbstractCloseable
     @Override
     public long approximateExcerptsInCycle(int cycle) {
         throwExceptionIfClosed();
+        final long closedCount = closedCycleCount(cycle);
+        if (closedCount >= 0)
+            return closedCount;
         try {
             return moveToCycle(cycle) ? store.approximateLastSequenceNumber(this) + 1 : -1;
         } catch (StreamCorruptedException e) {
@@ -1220,6 +1424,9 @@ class StoreTailer extends AbstractCloseable
     @Override
     public long exactExcerptsInCycle(int cycle) {
         throwExceptionIfClosed();
+        final long closedCount = closedCycleCount(cycle);
+        if (closedCount >= 0)
+            return closedCount;
         try {
             return moveToCycle(cycle) ? store.exactLastSequenceNumber(this) + 1 : -1;
         } catch (StreamCorruptedException e) {
@@ -1229,6 +1436,32 @@ class StoreTailer extends AbstractCloseable
         }
     }
 
+    @Override
+    public boolean moveToTime(final long epochNanos) {
+        throwExceptionIfClosed();
+        final TimeIndex timeIndex = queue.timeIndex();
+        if (timeIndex == null)
+            throw new UnsupportedOperationException("The time index is not kept, see SingleChronicleQueueBuilder.timeIndex()");
+        final long index;
+        try {
+            index = timeIndex.indexBefore(epochNanos);
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+        if (index != -1 && moveToIndex(index))
+            return true;
+        toStart();
+        return false;
+    }
+
+    /**
+     * @return the number of excerpts recorded when {@code cycle} was rolled, or -1 if there is no summary of it
+     */
+    private long closedCycleCount(final int cycle) {
+        final CycleSummaries cycleSummaries = queue.cycleSummaries();
+        return cycleSummaries == null ? -1 : cycleSummaries.excerptCount(cycle);
+    }
+
     @NotNull
     @Override
     public TailerState state() {
@@ -1333,6 +1566,32 @@ class StoreTailer extends AbstractCloseable
         return moveToState.indexMoveCount;
     }
 
+    /**
+     * Adds the index entry for the excerpt at {@code index}, in the current cycle at {@code position}, if one is due. The
+     * caller must hold the write lock.
+     */
+    void indexExcerpt(final long index, final long position) throws StreamCorruptedException {
+        final long sequenceNumber = queue.rollCycle().toSequenceNumber(index);
+        final SingleChronicleQueueStore store = store();
+        if (store.indexable(sequenceNumber))
+            store.indexing.setPositionForSequenceNumber(this, sequenceNumber, position);
+    }
+
+    /**
+     * @return the next sequence number due an index entry in the current cycle
+     */
+    long nextEntryToBeIndexed() {
+        return store().indexing.nextEntryToBeIndexed();
+    }
+
+    /**
+     * @return the index spacing of the current cycle, which may differ between cycles
+     * @see SingleChronicleQueueBuilder#indexSpacingBytes(int)
+     */
+    int indexSpacing() {
+        return store().indexing.indexSpacing();
+    }
+
     @NotNull
     private SingleChronicleQueueStore store() {
         if (store == null)
@@ -35,6 +35,7 @@ class TableDirectoryListing extends AbstractCloseable implements DirectoryListin
     private static final String HIGHEST_CREATED_CYCLE = "listing.highestCycle";
     private static final String LOWEST_CREATED_CYCLE = "listing.lowestCycle";
     private static final String MOD_COUNT = "listing.modCount";
+    static final String LAST_INDEX = "listing.lastIndex";
     static final int UNSET_MAX_CYCLE = Integer.MIN_VALUE;
     static final int UNSET_MIN_CYCLE = Integer.MAX_VALUE;
     static final String INITIAL_MIN_FILENAME = Character.toString(Character.MAX_VALUE);
@@ -45,15 +46,27 @@ class TableDirectoryListing extends AbstractCloseable implements DirectoryListin
     private volatile LongValue maxCycleValue;
     private volatile LongValue minCycleValue;
     private volatile LongValue modCount;
+    // only present if appenders track the last index
+    private volatile LongValue lastIndexValue;
+    private final boolean trackLastIndex;
     private long lastRefreshTimeMS = 0;
 
     TableDirectoryListing(
             final @NotNull TableStore<?> tableStore,
             final Path queuePath,
             final ToIntFunction<String> fileNameToCycleFunction) {
+        this(tableStore, queuePath, fileNameToCycleFunction, false);
+    }
+
+    TableDirectoryListing(
+            final @NotNull TableStore<?> tableStore,
+            final Path queuePath,
+            final ToIntFunction<String> fileNameToCycleFunction,
+            final boolean trackLastIndex) {
         this.tableStore = tableStore;
         this.queuePath = queuePath;
         this.fileNameToCycleFunction = fileNameToCycleFunction;
+        this.trackLastIndex = trackLastIndex;
 
         checkReadOnly(tableStore);
         singleThreadedCheckDisabled(true);
@@ -83,6 +96,15 @@ class TableDirectoryListing extends AbstractCloseable implements DirectoryListin
         maxCycleValue = tableStore.acquireValueFor(HIGHEST_CREATED_CYCLE);
         minCycleValue = tableStore.acquireValueFor(LOWEST_CREATED_CYCLE);
         modCount = tableStore.acquireValueFor(MOD_COUNT);
+        lastIndexValue = acquireLastIndexValue();
+    }
+
+    protected LongValue acquireLastIndexValue() {
+        return trackLastIndex ? tableStore.acquireValueFor(LAST_INDEX, -1L) : null;
+    }
+
+    protected TableStore<?> tableStore() {
+        return tableStore;
     }
 
     @Override
@@ -150,6 +172,19 @@ class TableDirectoryListing extends AbstractCloseable implements DirectoryListin
         modCount.addAtomicValue(1);
     }
 
+    @Override
+    public long lastIndex() {
+        final LongValue lastIndexValue = this.lastIndexValue;
+        return lastIndexValue == null ? -1 : lastIndexValue.getVolatileValue(-1);
+    }
+
+    @Override
+    public void onAppend(long index) {
+        final LongValue lastIndexValue = this.lastIndexValue;
+        if (lastIndexValue != null)
+            lastIndexValue.setMaxValue(index);
+    }
+
     @Override
     public long lastRefreshTimeMS() {
         return lastRefreshTimeMS;
@@ -176,7 +211,7 @@ class TableDirectoryListing extends AbstractCloseable implements DirectoryListin
     }
 
     protected void performClose() {
-        Closeable.closeQuietly(minCycleValue, maxCycleValue, modCount);
+        Closeable.closeQuietly(minCycleValue, maxCycleValue, modCount, lastIndexValue);
     }
 
     private int getMaxCycleValue() {
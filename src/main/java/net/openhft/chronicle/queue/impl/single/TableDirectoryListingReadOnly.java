@@ -19,6 +19,7 @@
 package net.openhft.chronicle.queue.impl.single;
 
 import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.values.LongValue;
 import net.openhft.chronicle.queue.impl.TableStore;
 import org.jetbrains.annotations.NotNull;
 
@@ -53,6 +54,22 @@ class TableDirectoryListingReadOnly extends TableDirectoryListing {
         }
     }
 
+    @Override
+    protected LongValue acquireLastIndexValue() {
+        // use the last index if the appenders track it, but don't add it
+        final boolean[] tracked = {false};
+        tableStore().forEachKey(tracked, (t, key, value) -> {
+            if (LAST_INDEX.contentEquals(key))
+                t[0] = true;
+        });
+        return tracked[0] ? tableStore().acquireValueFor(LAST_INDEX) : null;
+    }
+
+    @Override
+    public void onAppend(long index) {
+        // no-op
+    }
+
     @Override
     public void refresh(final boolean force) {
         // no-op
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.MappedBytes;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.AbstractCloseable;
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.queue.RollCycle;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.NavigableMap;
+
+/**
+ * A sparse index from the time excerpts were written to their index, kept beside each cycle file.
+ * <p>
+ * Whenever an appender writes an excerpt whose sequence number is a multiple of the index spacing, it records the time in
+ * nanoseconds at slot {@code sequence / indexSpacing} of the cycle's time index, a file of longs named after the cycle file
+ * with a {@value #SUFFIX} suffix. Slots not written yet are zero. Times are in the order the excerpts were written, so the
+ * last excerpt indexed before a given time can be found from the first slot of each cycle and then a binary search of one
+ * file.
+ * <p>
+ * Each appender records times through its own {@link Writer}. A cycle's time index is removed when the cycle file is created,
+ * so a cycle file which is deleted and created again doesn't pick up the times of the old one, and time indexes left without
+ * their cycle file are removed when the queue is opened and, in the background, as it rolls.
+ */
+final class TimeIndex {
+    static final String SUFFIX = ".time";
+    private static final int CHUNK_SIZE = 64 << 10;
+
+    @NotNull
+    private final SingleChronicleQueue queue;
+    private final int indexSpacing;
+
+    TimeIndex(@NotNull final SingleChronicleQueue queue) {
+        this.queue = queue;
+        this.indexSpacing = queue.indexSpacing();
+    }
+
+    @NotNull
+    static File fileFor(@NotNull final File cycleFile) {
+        return new File(cycleFile.getParentFile(), cycleFile.getName() + SUFFIX);
+    }
+
+    /**
+     * Removes the time index of a cycle file which has just been created, as it was written for an earlier file of the cycle.
+     */
+    static void onCycleFileCreated(@NotNull final File cycleFile) {
+        deleteQuietly(fileFor(cycleFile));
+    }
+
+    /**
+     * Removes the time indexes in {@code dir} whose cycle files no longer exist.
+     */
+    static void removeOrphans(@NotNull final File dir) {
+        final File[] orphans = dir.listFiles((d, name) ->
+                name.endsWith(SingleChronicleQueue.SUFFIX + SUFFIX)
+                        && !new File(d, name.substring(0, name.length() - SUFFIX.length())).exists());
+        if (orphans != null)
+            for (File orphan : orphans)
+                deleteQuietly(orphan);
+    }
+
+    private static void deleteQuietly(final File file) {
+        if (file.exists() && !file.delete() && file.exists())
+            Jvm.warn().on(TimeIndex.class, "Unable to delete " + file);
+    }
+
+    /**
+     * @return a writer for an appender to record the times of the excerpts it writes
+     */
+    @NotNull
+    Writer newWriter() {
+        return new Writer();
+    }
+
+    /**
+     * Records the times of the excerpts written by one appender, mapping the time index of the cycle it is writing to.
+     */
+    final class Writer extends AbstractCloseable {
+        private int writeCycle = Integer.MIN_VALUE;
+        private MappedBytes writeBytes;
+
+        Writer() {
+            // follows its appender, which may be handed between threads
+            singleThreadedCheckDisabled(true);
+        }
+
+        /**
+         * Records the time the excerpt at {@code sequence} in {@code cycle} was written, if it is one which is indexed.
+         */
+        void onAppended(final int cycle, final long sequence) {
+            if ((sequence & (indexSpacing - 1)) != 0)
+                return;
+            final long timeNanos = queue.time().currentTimeNanos();
+            try {
+                if (cycle != writeCycle) {
+                    Closeable.closeQuietly(writeBytes);
+                    writeBytes = null;
+                    writeCycle = cycle;
+                    writeBytes = MappedBytes.mappedBytes(fileFor(queue.cycleFile(cycle)), CHUNK_SIZE);
+                    writeBytes.singleThreadedCheckDisabled(true);
+                }
+                writeBytes.writeOrderedLong(sequence / indexSpacing * Long.BYTES, timeNanos);
+            } catch (IOException | RuntimeException e) {
+                // the time index is an optimisation, so don't fail the append
+                Jvm.warn().on(TimeIndex.class, "Unable to update the time index of cycle " + cycle, e);
+            }
+        }
+
+        @Override
+        protected void performClose() {
+            Closeable.closeQuietly(writeBytes);
+            writeBytes = null;
+        }
+    }
+
+    /**
+     * @return the index of the last excerpt indexed before {@code timeNanos}, or -1 if none was
+     */
+    long indexBefore(final long timeNanos) throws IOException {
+        final NavigableMap<Long, File> tree = queue.cycleTree(false);
+        final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.nativeOrder());
+        // find the last cycle whose first excerpt was written before the time, searching back from the end as replays
+        // usually start recently, and skipping cycles without a time index
+        int cycle = -1;
+        for (Long key : tree.descendingKeySet()) {
+            final long first = firstTime(Math.toIntExact(key), buffer);
+            if (first != 0 && first < timeNanos) {
+                cycle = Math.toIntExact(key);
+                break;
+            }
+        }
+        if (cycle == -1)
+            return -1;
+
+        try (RandomAccessFile raf = new RandomAccessFile(fileFor(queue.cycleFile(cycle)), "r")) {
+            final FileChannel channel = raf.getChannel();
+            // slot 0 was written before the time, find the last slot which was
+            long lowSlot = 0;
+            long highSlot = channel.size() / Long.BYTES - 1;
+            while (lowSlot < highSlot) {
+                final long mid = (lowSlot + highSlot + 1) >>> 1;
+                final long time = read(channel, mid, buffer);
+                // slots not written yet sort after every time
+                if (time != 0 && time < timeNanos)
+                    lowSlot = mid;
+                else
+                    highSlot = mid - 1;
+            }
+            final RollCycle rollCycle = queue.rollCycle();
+            return rollCycle.toIndex(cycle, lowSlot * indexSpacing);
+        }
+    }
+
+    private long firstTime(final int cycle, final ByteBuffer buffer) throws IOException {
+        final File file = fileFor(queue.cycleFile(cycle));
+        if (!file.exists())
+            return 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return read(raf.getChannel(), 0, buffer);
+        }
+    }
+
+    private static long read(final FileChannel channel, final long slot, final ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        final long position = slot * Long.BYTES;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                return 0;
+        }
+        return buffer.getLong(0);
+    }
+}
@@ -19,10 +19,12 @@
 package net.openhft.chronicle.queue.reader;
 
 import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.Closeable;
 import net.openhft.chronicle.queue.ChronicleQueue;
 import net.openhft.chronicle.queue.ExcerptTailer;
 import net.openhft.chronicle.queue.TailerDirection;
 import net.openhft.chronicle.queue.impl.single.BinarySearch;
+import net.openhft.chronicle.queue.impl.single.BinarySearchKeyCache;
 import net.openhft.chronicle.queue.impl.single.NotComparableException;
 import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
 import net.openhft.chronicle.queue.internal.reader.InternalDummyMethodReaderQueueEntryHandler;
@@ -32,6 +34,7 @@ import net.openhft.chronicle.queue.internal.reader.queueentryreaders.CustomPlugi
 import net.openhft.chronicle.queue.internal.reader.queueentryreaders.MethodReaderQueueEntryReader;
 import net.openhft.chronicle.queue.internal.reader.queueentryreaders.VanillaQueueEntryReader;
 import net.openhft.chronicle.queue.reader.comparator.BinarySearchComparator;
+import net.openhft.chronicle.queue.reader.comparator.NumericBinarySearchComparator;
 import net.openhft.chronicle.queue.util.ToolsUtil;
 import net.openhft.chronicle.threads.Pauser;
 import net.openhft.chronicle.wire.*;
@@ -53,6 +56,7 @@ import static net.openhft.chronicle.queue.impl.StoreFileListener.NO_OP;
 
 public class ChronicleReader implements Reader {
     private static final long UNSET_VALUE = Long.MIN_VALUE;
+    private static final int BINARY_SEARCH_KEY_CACHE_SIZE = Jvm.getInteger("chronicle.reader.binarySearchKeyCacheSize", 1 << 16);
 
     private final List<Pattern> inclusionRegex = new ArrayList<>();
     private final List<Pattern> exclusionRegex = new ArrayList<>();
@@ -70,6 +74,8 @@ public class ChronicleReader implements Reader {
     private boolean displayIndex = true;
     private Class<?> methodReaderInterface;
     private BinarySearchComparator binarySearch;
+    // keys read by successive binary searches of the same queue
+    private BinarySearchKeyCache binarySearchKeyCache;
     private String arg;
     private boolean showMessageHistory;
     private volatile boolean running = true;
@@ -95,38 +101,47 @@ public class ChronicleReader implements Reader {
         boolean isFirstIteration = true;
         boolean retryLastOperation;
         boolean queueHasBeenModified;
-        do {
-            try (final ChronicleQueue queue = createQueue();
-                 final ExcerptTailer tailer = queue.createTailer(tailerId);
-                 final ExcerptTailer toEndTailer = queue.createTailer()) {
-                MessageHistory.set(new VanillaMessageHistory());
-
-                MessageCountingMessageConsumer messageConsumer = new MessageCountingMessageConsumer(matchLimit, createMessageConsumers());
-                QueueEntryReader queueEntryReader = createQueueEntryReader(tailer, messageConsumer);
-
-                do {
-                    if (highestReachedIndex != 0L) {
-                        tailer.moveToIndex(highestReachedIndex);
-                    }
-                    try {
-                        moveToSpecifiedPosition(queue, tailer, isFirstIteration);
-                        lastObservedTailIndex = tailer.index();
-                        readWhileNotInterrupted(tailer, messageConsumer, queueEntryReader);
-                    } finally {
-                        highestReachedIndex = tailer.index();
-                        isFirstIteration = false;
-                    }
-                    queueHasBeenModified = queueHasBeenModifiedSinceLastCheck(lastObservedTailIndex, toEndTailer);
-                    retryLastOperation = false;
-                    if (!running || messageConsumer.matchLimitReached())
-                        return;
-                } while (tailerDirection != BACKWARD && (tailInputSource || queueHasBeenModified));
-            } catch (final RuntimeException e) {
-                retryLastOperation = handleRuntimeException(e);
-            } finally {
-                MessageHistory.set(null);
-            }
-        } while (retryLastOperation);
+        // the keys cached by binary searches are held off heap until this returns
+        binarySearchKeyCache = binarySearch instanceof NumericBinarySearchComparator
+                ? new BinarySearchKeyCache(BINARY_SEARCH_KEY_CACHE_SIZE)
+                : null;
+        try {
+            do {
+                try (final ChronicleQueue queue = createQueue();
+                     final ExcerptTailer tailer = queue.createTailer(tailerId);
+                     final ExcerptTailer toEndTailer = queue.createTailer()) {
+                    MessageHistory.set(new VanillaMessageHistory());
+
+                    MessageCountingMessageConsumer messageConsumer = new MessageCountingMessageConsumer(matchLimit, createMessageConsumers());
+                    QueueEntryReader queueEntryReader = createQueueEntryReader(tailer, messageConsumer);
+
+                    do {
+                        if (highestReachedIndex != 0L) {
+                            tailer.moveToIndex(highestReachedIndex);
+                        }
+                        try {
+                            moveToSpecifiedPosition(queue, tailer, isFirstIteration);
+                            lastObservedTailIndex = tailer.index();
+                            readWhileNotInterrupted(tailer, messageConsumer, queueEntryReader);
+                        } finally {
+                            highestReachedIndex = tailer.index();
+                            isFirstIteration = false;
+                        }
+                        queueHasBeenModified = queueHasBeenModifiedSinceLastCheck(lastObservedTailIndex, toEndTailer);
+                        retryLastOperation = false;
+                        if (!running || messageConsumer.matchLimitReached())
+                            return;
+                    } while (tailerDirection != BACKWARD && (tailInputSource || queueHasBeenModified));
+                } catch (final RuntimeException e) {
+                    retryLastOperation = handleRuntimeException(e);
+                } finally {
+                    MessageHistory.set(null);
+                }
+            } while (retryLastOperation);
+        } finally {
+            Closeable.closeQuietly(binarySearchKeyCache);
+            binarySearchKeyCache = null;
+        }
 
     }
 
@@ -437,7 +452,7 @@ public class ChronicleReader implements Reader {
         TailerDirection originalDirection = tailer.direction();
         tailer.direction(FORWARD);
         final Wire key = binarySearch.wireKey();
-        long rv = BinarySearch.search(tailer, key, binarySearch);
+        long rv = BinarySearch.search(tailer, key, binarySearch, binarySearchKeyCache);
         if (rv == -1) {
             tailer.toStart();
         } else if (rv < 0) {
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.reader.comparator;
+
+import net.openhft.chronicle.queue.impl.single.BinarySearch;
+import net.openhft.chronicle.queue.impl.single.NotComparableException;
+import net.openhft.chronicle.wire.Wire;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * A {@link BinarySearchComparator} for excerpts ordered by a numeric key, such as a sequence number or timestamp.
+ * {@link BinarySearch} interpolates the key to choose where to probe, which typically finds an excerpt in a few probes
+ * when keys are spread evenly, rather than the log2(n) of bisection.
+ */
+public interface NumericBinarySearchComparator extends BinarySearchComparator, ToLongFunction<Wire> {
+
+    /**
+     * @return the key of {@code wire}, which may be an excerpt or the {@link #wireKey()}
+     * @throws NotComparableException if {@code wire} has no key
+     */
+    @Override
+    long applyAsLong(Wire wire);
+
+    @Override
+    default int compare(Wire wire1, Wire wire2) {
+        final long readPosition1 = wire1.bytes().readPosition();
+        final long readPosition2 = wire2.bytes().readPosition();
+        try {
+            return Long.compare(applyAsLong(wire1), applyAsLong(wire2));
+        } finally {
+            wire1.bytes().readPosition(readPosition1);
+            wire2.bytes().readPosition(readPosition2);
+        }
+    }
+}
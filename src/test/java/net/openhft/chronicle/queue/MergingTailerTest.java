@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import net.openhft.chronicle.wire.DocumentContext;
+import net.openhft.chronicle.wire.Wire;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.function.ToLongFunction;
+
+import static org.junit.Assert.*;
+
+public class MergingTailerTest extends QueueTestCommon {
+
+    private static final ToLongFunction<Wire> TIMESTAMP = wire -> wire.read("ts").int64();
+
+    @Test
+    public void excerptsAreMergedByKey() throws IOException {
+        try (SingleChronicleQueue q0 = createQueue(null);
+             SingleChronicleQueue q1 = createQueue(null);
+             ExcerptAppender a0 = q0.createAppender();
+             ExcerptAppender a1 = q1.createAppender();
+             ExcerptTailer t0 = q0.createTailer();
+             ExcerptTailer t1 = q1.createTailer()) {
+            append(a0, 1, 4, 5, 9);
+            append(a1, 2, 3, 6, 10);
+
+            final MergingTailer tailer = new MergingTailer(TIMESTAMP, t0, t1);
+            assertKeys(tailer, 1, 2, 3, 4, 5, 6, 9, 10);
+            assertSources(tailer.toStart(), 0, 1, 1, 0, 0, 1, 0, 1);
+        }
+    }
+
+    @Test
+    public void equalKeysAreReadInTheOrderOfTheTailers() throws IOException {
+        try (SingleChronicleQueue q0 = createQueue(null);
+             SingleChronicleQueue q1 = createQueue(null);
+             ExcerptAppender a0 = q0.createAppender();
+             ExcerptAppender a1 = q1.createAppender();
+             ExcerptTailer t0 = q0.createTailer();
+             ExcerptTailer t1 = q1.createTailer()) {
+            append(a0, 5, 5);
+            append(a1, 5, 7);
+            assertSources(new MergingTailer(TIMESTAMP, t1, t0), 0, 1, 1, 0);
+        }
+    }
+
+    @Test
+    public void excerptsAppendedLaterAreMerged() throws IOException {
+        try (SingleChronicleQueue q0 = createQueue(null);
+             SingleChronicleQueue q1 = createQueue(null);
+             ExcerptAppender a0 = q0.createAppender();
+             ExcerptAppender a1 = q1.createAppender();
+             ExcerptTailer t0 = q0.createTailer();
+             ExcerptTailer t1 = q1.createTailer()) {
+            final MergingTailer tailer = new MergingTailer(TIMESTAMP, t0, t1);
+            append(a0, 1, 3);
+            assertKeys(tailer, 1, 3);
+            append(a1, 2);
+            append(a0, 4);
+            assertKeys(tailer, 2, 4);
+        }
+    }
+
+    @Test
+    public void rollingBackReturnsTheExcerptToTheMerge() throws IOException {
+        try (SingleChronicleQueue q0 = createQueue(null);
+             SingleChronicleQueue q1 = createQueue(null);
+             ExcerptAppender a0 = q0.createAppender();
+             ExcerptAppender a1 = q1.createAppender();
+             ExcerptTailer t0 = q0.createTailer();
+             ExcerptTailer t1 = q1.createTailer()) {
+            append(a0, 1, 4);
+            append(a1, 2);
+            final MergingTailer tailer = new MergingTailer(TIMESTAMP, t0, t1);
+            try (DocumentContext dc = tailer.readingDocument()) {
+                assertTrue(dc.isPresent());
+                dc.rollbackOnClose();
+            }
+            assertKeys(tailer, 1, 2, 4);
+        }
+    }
+
+    @Test
+    public void moveToTimeSkipsEarlierExcerpts() throws IOException {
+        final SetTimeProvider timeProvider = new SetTimeProvider(1_000_000_000L);
+        try (SingleChronicleQueue q0 = createQueue(timeProvider);
+             SingleChronicleQueue q1 = createQueue(timeProvider);
+             ExcerptAppender a0 = q0.createAppender();
+             ExcerptAppender a1 = q1.createAppender();
+             ExcerptTailer t0 = q0.createTailer();
+             ExcerptTailer t1 = q1.createTailer()) {
+            final long start = timeProvider.currentTimeNanos();
+            for (int i = 0; i < 100; i++) {
+                // keyed by the time each excerpt is appended
+                append(i % 3 == 0 ? a1 : a0, timeProvider.currentTimeNanos());
+                timeProvider.advanceMicros(1);
+            }
+
+            final MergingTailer tailer = new MergingTailer(TIMESTAMP, t0, t1);
+            tailer.moveToTime(start + 40_000);
+            for (int i = 40; i < 100; i++)
+                assertKeys(tailer, start + i * 1_000L);
+            assertKeys(tailer);
+        }
+    }
+
+    private SingleChronicleQueue createQueue(SetTimeProvider timeProvider) throws IOException {
+        final SingleChronicleQueueBuilder builder = SingleChronicleQueueBuilder.binary(getTmpDir())
+                .testBlockSize();
+        if (timeProvider != null)
+            builder.timeProvider(timeProvider).timeIndex(true);
+        return builder.build();
+    }
+
+    private static void append(ExcerptAppender appender, long... keys) {
+        for (long key : keys)
+            try (DocumentContext dc = appender.writingDocument()) {
+                dc.wire().write("ts").int64(key);
+            }
+    }
+
+    private static void assertKeys(MergingTailer tailer, long... keys) {
+        for (long key : keys) {
+            try (DocumentContext dc = tailer.readingDocument()) {
+                assertTrue(dc.isPresent());
+                assertEquals(key, dc.wire().read("ts").int64());
+                assertEquals(key, tailer.key());
+            }
+        }
+        if (keys.length == 0)
+            try (DocumentContext dc = tailer.readingDocument()) {
+                assertFalse(dc.isPresent());
+            }
+    }
+
+    private static void assertSources(MergingTailer tailer, int... sources) {
+        for (int source : sources) {
+            try (DocumentContext dc = tailer.readingDocument()) {
+                assertTrue(dc.isPresent());
+                assertEquals(source, tailer.source());
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.openhft.chronicle.queue.channel;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.queue.ChronicleQueue;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import net.openhft.chronicle.wire.DocumentContext;
+import net.openhft.chronicle.wire.Wire;
+import net.openhft.chronicle.wire.WireType;
+import net.openhft.chronicle.wire.channel.ChronicleChannel;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SubscribeHandlerTest extends QueueTestCommon {
+
+    @Test
+    public void copierReportsWorkUntilABacklogOfManyBatchesIsCopied() {
+        final int count = SubscribeHandler.BatchCopier.MAX_BATCH * 8;
+        final Wire sent = WireType.BINARY_LIGHT.apply(Bytes.allocateElasticOnHeap());
+        // a channel which only buffers what is written to it
+        final ChronicleChannel channel = (ChronicleChannel) Proxy.newProxyInstance(
+                ChronicleChannel.class.getClassLoader(),
+                new Class[]{ChronicleChannel.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("writingDocument"))
+                        return sent.writingDocument();
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        try (ChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir()).testBlockSize().build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            for (int i = 0; i < count; i++) {
+                try (DocumentContext dc = appender.writingDocument()) {
+                    dc.wire().write("seq").int32(i)
+                            .write("text").text("more than one batch fills the channel");
+                }
+            }
+
+            final SubscribeHandler.BatchCopier copier = new SubscribeHandler.BatchCopier(tailer, null);
+            int received = 0;
+            int copies = 0;
+            // each copy stops when the channel is full, but still reports that it copied excerpts
+            while (copier.copy(channel)) {
+                copies++;
+                while (true) {
+                    try (DocumentContext dc = sent.readingDocument()) {
+                        if (!dc.isPresent())
+                            break;
+                        assertEquals(received++, dc.wire().read("seq").int32());
+                    }
+                }
+                sent.clear();
+            }
+            assertEquals(count, received);
+            assertTrue("copies " + copies, copies > 1);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static net.openhft.chronicle.queue.rollcycles.TestRollCycles.TEST_SECONDLY;
+import static org.junit.Assert.*;
+
+public class AdaptiveIndexSpacingTest extends QueueTestCommon {
+
+    private static final int EXCERPTS = 500;
+
+    @Test
+    public void smallExcerptsGetASparserIndex() throws IOException {
+        // about 13 bytes an excerpt, so an entry every 256 excerpts
+        final int[] spacings = appendTwoCycles("hello", 4 << 10);
+        assertEquals(TEST_SECONDLY.defaultIndexSpacing(), spacings[0]);
+        assertEquals(256, spacings[1]);
+    }
+
+    @Test
+    public void largeExcerptsKeepTheConfiguredSpacing() throws IOException {
+        final int[] spacings = appendTwoCycles(new String(new char[2000]).replace('\0', 'x'), 4 << 10);
+        assertEquals(TEST_SECONDLY.defaultIndexSpacing(), spacings[0]);
+        assertEquals(TEST_SECONDLY.defaultIndexSpacing(), spacings[1]);
+    }
+
+    @Test
+    public void spacingIsFixedByDefault() throws IOException {
+        final int[] spacings = appendTwoCycles("hello", 0);
+        assertEquals(TEST_SECONDLY.defaultIndexSpacing(), spacings[0]);
+        assertEquals(TEST_SECONDLY.defaultIndexSpacing(), spacings[1]);
+    }
+
+    @Test
+    public void anotherQueueFindsTheEndOfAnAdaptiveCycle() throws IOException {
+        final File dir = getTmpDir();
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .indexSpacingBytes(4 << 10)
+                .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            for (int i = 0; i < 2 * EXCERPTS; i++) {
+                if (i == EXCERPTS)
+                    timeProvider.advanceMillis(1_000);
+                appender.writeText("hello" + i);
+            }
+            final long lastIndex = appender.lastIndexAppended();
+
+            // the second cycle was created by the appender with a sparser spacing
+            try (SingleChronicleQueue other = SingleChronicleQueueBuilder.binary(dir)
+                    .testBlockSize()
+                    .rollCycle(TEST_SECONDLY)
+                    .timeProvider(timeProvider)
+                    .build();
+                 ExcerptTailer tailer = other.createTailer()) {
+                assertEquals(lastIndex, other.lastIndex());
+                assertEquals(lastIndex + 1, tailer.toEnd().index());
+            }
+
+            // and the appender keeps appending where the other queue expects
+            appender.writeText("more");
+            try (SingleChronicleQueue other = SingleChronicleQueueBuilder.binary(dir)
+                    .testBlockSize()
+                    .rollCycle(TEST_SECONDLY)
+                    .timeProvider(timeProvider)
+                    .build()) {
+                assertEquals(lastIndex + 1, other.lastIndex());
+            }
+        }
+    }
+
+    private int[] appendTwoCycles(String text, int indexSpacingBytes) throws IOException {
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(getTmpDir())
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .indexSpacingBytes(indexSpacingBytes)
+                .build();
+             ExcerptAppender appender = queue.createAppender();
+             StoreTailer tailer = (StoreTailer) queue.createTailer()) {
+            final long[] indexes = new long[2 * EXCERPTS];
+            for (int i = 0; i < indexes.length; i++) {
+                if (i == EXCERPTS)
+                    timeProvider.advanceMillis(1_000);
+                appender.writeText(text + i);
+                indexes[i] = appender.lastIndexAppended();
+            }
+
+            // every excerpt can still be found, whatever the spacing of its cycle
+            for (int i = indexes.length - 1; i >= 0; i -= 7) {
+                assertTrue(tailer.moveToIndex(indexes[i]));
+                assertEquals(text + i, tailer.readText());
+            }
+
+            final int[] spacings = new int[2];
+            assertTrue(tailer.moveToIndex(indexes[0]));
+            spacings[0] = tailer.indexSpacing();
+            assertTrue(tailer.moveToIndex(indexes[EXCERPTS]));
+            spacings[1] = tailer.indexSpacing();
+            return spacings;
+        }
+    }
+}
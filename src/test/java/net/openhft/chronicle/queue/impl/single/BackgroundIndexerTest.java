@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BackgroundIndexerTest extends QueueTestCommon {
+
+    @Test
+    public void entriesAreAddedInTheBackground() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .indexSpacing(4)
+                .backgroundIndexing(true)
+                .build();
+             ExcerptAppender appender = queue.createAppender();
+             StoreTailer tailer = (StoreTailer) queue.createTailer()) {
+            final long[] indices = new long[1_000];
+            for (int i = 0; i < indices.length; i++) {
+                appender.writeText("msg " + i);
+                indices[i] = appender.lastIndexAppended();
+            }
+
+            // excerpts can be read whether or not they have been indexed yet
+            for (int i : new int[]{999, 0, 500, 3, 4, 777}) {
+                assertTrue(tailer.moveToIndex(indices[i]));
+                assertEquals("msg " + i, tailer.readText());
+            }
+
+            final int cycle = appender.cycle();
+            final long end = System.currentTimeMillis() + 10_000;
+            while (true) {
+                assertTrue(tailer.moveToCycle(cycle));
+                if (tailer.nextEntryToBeIndexed() > queue.rollCycle().toSequenceNumber(indices[999]))
+                    break;
+                assertTrue("Not indexed in time", System.currentTimeMillis() < end);
+                Jvm.pause(10);
+            }
+            for (int i : new int[]{998, 1, 400}) {
+                assertTrue(tailer.moveToIndex(indices[i]));
+                assertEquals("msg " + i, tailer.readText());
+            }
+        }
+    }
+}
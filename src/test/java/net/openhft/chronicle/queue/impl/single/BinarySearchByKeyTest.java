@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.wire.DocumentContext;
+import net.openhft.chronicle.wire.Wire;
+import net.openhft.chronicle.wire.WireType;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+
+import static net.openhft.chronicle.queue.rollcycles.TestRollCycles.TEST_SECONDLY;
+import static org.junit.Assert.*;
+
+public class BinarySearchByKeyTest extends QueueTestCommon {
+
+    private static final int CYCLES = 9;
+    private static final int PER_CYCLE = 20;
+
+    private static final Comparator<Wire> BY_ID = (a, b) -> {
+        final long aPosition = a.bytes().readPosition();
+        final long bPosition = b.bytes().readPosition();
+        try {
+            return Long.compare(a.read("id").int64(), b.read("id").int64());
+        } finally {
+            a.bytes().readPosition(aPosition);
+            b.bytes().readPosition(bPosition);
+        }
+    };
+
+    @Test
+    public void findsKeysAcrossCycles() throws Exception {
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        final long[] indices = new long[CYCLES * PER_CYCLE];
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .keyExtractor(wire -> wire.read("id").int64())
+                .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            for (int i = 0; i < indices.length; i++) {
+                if (i % PER_CYCLE == 0)
+                    // leave a gap of one cycle, which isn't created
+                    timeProvider.advanceMillis(2_000);
+                try (DocumentContext dc = appender.writingDocument()) {
+                    // ids are even so odd ones can be searched for
+                    dc.wire().write("id").int64(i * 2L);
+                }
+                indices[i] = appender.lastIndexAppended();
+            }
+
+            // every cycle but the last is complete once the indexer has reached the last
+            final int lastCycle = appender.cycle();
+            waitForIndexedUpTo(KeyIndex.fileFor(queue.cycleFile(lastCycle)), PER_CYCLE);
+            final int firstCycle = queue.rollCycle().toCycle(indices[0]);
+            assertArrayEquals(new long[]{0, (PER_CYCLE - 1) * 2}, queue.keyIndex().keyRange(firstCycle));
+            assertNull(queue.keyIndex().keyRange(lastCycle));
+
+            try (ExcerptTailer tailer = queue.createTailer()) {
+                for (int i = 0; i < indices.length; i++) {
+                    assertEquals(indices[i], BinarySearch.search(tailer, key(i * 2L), BY_ID));
+                    assertEquals(indices[i], BinarySearch.searchByKey(tailer, key(i * 2L), BY_ID));
+                }
+                // a missing key is between two excerpts
+                for (long id : new long[]{1, PER_CYCLE * 2 - 1, PER_CYCLE * 4 + 1}) {
+                    assertTrue(BinarySearch.search(tailer, key(id), BY_ID) < 0);
+                    assertTrue(BinarySearch.searchByKey(tailer, key(id), BY_ID) < 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void keyRepeatedAcrossCyclesIsFoundInTheFirstOfThem() throws Exception {
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        // the middle cycle, probed first, is one of three which only hold the key
+        final long[][] cycles = {{0, 2, 4}, {10, 10, 10}, {10, 10, 10}, {10, 10, 10}, {20, 22}};
+        final int[] cycleOf = new int[cycles.length];
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .keyExtractor(wire -> wire.read("id").int64())
+                .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            for (int c = 0; c < cycles.length; c++) {
+                timeProvider.advanceMillis(1_000);
+                for (long id : cycles[c]) {
+                    try (DocumentContext dc = appender.writingDocument()) {
+                        dc.wire().write("id").int64(id);
+                    }
+                }
+                cycleOf[c] = appender.cycle();
+            }
+            waitForIndexedUpTo(KeyIndex.fileFor(queue.cycleFile(appender.cycle())), cycles[cycles.length - 1].length);
+
+            try (ExcerptTailer tailer = queue.createTailer()) {
+                assertEquals(cycleOf[1], queue.rollCycle().toCycle(BinarySearch.search(tailer, key(10), BY_ID)));
+                assertEquals(cycleOf[1], queue.rollCycle().toCycle(BinarySearch.searchByKey(tailer, key(10), BY_ID)));
+            }
+        }
+    }
+
+    private static Wire key(long id) {
+        final Wire wire = WireType.BINARY.apply(Bytes.allocateElasticOnHeap());
+        wire.write("id").int64(id);
+        return wire;
+    }
+
+    private static void waitForIndexedUpTo(File table, long sequence) throws IOException {
+        final long end = System.currentTimeMillis() + 10_000;
+        while (KeyIndex.indexedUpTo(table) < sequence) {
+            assertTrue("Not indexed up to " + sequence, System.currentTimeMillis() < end);
+            Jvm.pause(10);
+        }
+    }
+}
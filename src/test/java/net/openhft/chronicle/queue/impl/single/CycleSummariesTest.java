@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import org.junit.Test;
+
+import java.io.File;
+
+import static net.openhft.chronicle.queue.rollcycles.TestRollCycles.TEST_SECONDLY;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+
+public class CycleSummariesTest extends QueueTestCommon {
+
+    @Test
+    public void summaryIsRecordedWhenACycleIsRolled() throws Exception {
+        final File dir = getTmpDir();
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        final int firstCycle;
+        final int secondCycle;
+        final long first;
+        final long last;
+        try (SingleChronicleQueue queue = builder(dir, timeProvider).build();
+             ExcerptAppender appender = queue.createAppender()) {
+            first = append(appender, 5) - 4;
+            firstCycle = appender.cycle();
+            timeProvider.advanceMillis(1_000);
+            final long firstClosed = timeProvider.currentTimeMillis();
+            append(appender, 3);
+            secondCycle = appender.cycle();
+            timeProvider.advanceMillis(1_000);
+            final long secondClosed = timeProvider.currentTimeMillis();
+            last = append(appender, 2);
+
+            final CycleSummaries cycleSummaries = queue.cycleSummaries();
+            assertNotNull(cycleSummaries);
+            assertEquals(5, cycleSummaries.excerptCount(firstCycle));
+            assertEquals(3, cycleSummaries.excerptCount(secondCycle));
+            assertEquals(firstClosed, cycleSummaries.closedTimestamp(firstCycle));
+            assertEquals(secondClosed, cycleSummaries.closedTimestamp(secondCycle));
+            assertTrue(cycleSummaries.length(firstCycle) > 0);
+            // the current cycle is still open
+            assertEquals(-1, cycleSummaries.excerptCount(appender.cycle()));
+        }
+
+        // the summaries are kept in the metadata
+        try (SingleChronicleQueue queue = builder(dir, timeProvider).build();
+             ExcerptTailer tailer = queue.createTailer()) {
+            assertEquals(5, tailer.exactExcerptsInCycle(firstCycle));
+            assertEquals(3, tailer.approximateExcerptsInCycle(secondCycle));
+            assertEquals(5 + 3 + 1, queue.countExcerpts(first, last));
+        }
+    }
+
+    @Test
+    public void summariesShareAFixedNumberOfSlots() throws Exception {
+        final File dir = getTmpDir();
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        try (SingleChronicleQueue queue = builder(dir, timeProvider).build();
+             ExcerptAppender appender = queue.createAppender()) {
+            append(appender, 2);
+            final int firstCycle = appender.cycle();
+            timeProvider.advanceMillis(1_000);
+            append(appender, 1);
+            // the next cycle using the same slot as the first
+            timeProvider.advanceMillis((CycleSummaries.SLOTS - 1) * 1_000L);
+            append(appender, 4);
+            final int reusingCycle = appender.cycle();
+            assertEquals(firstCycle + CycleSummaries.SLOTS, reusingCycle);
+            timeProvider.advanceMillis(1_000);
+            append(appender, 1);
+
+            final CycleSummaries cycleSummaries = queue.cycleSummaries();
+            assertEquals(-1, cycleSummaries.excerptCount(firstCycle));
+            assertEquals(1, cycleSummaries.excerptCount(firstCycle + 1));
+            assertEquals(4, cycleSummaries.excerptCount(reusingCycle));
+            assertEquals(2 * 4, countSummaryKeys(queue));
+        }
+    }
+
+    @Test
+    public void summaryOfADeletedCycleIsIgnored() throws Exception {
+        // a mapped file can't be deleted on Windows
+        assumeFalse(OS.isWindows());
+        final File dir = getTmpDir();
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        try (SingleChronicleQueue queue = builder(dir, timeProvider).build();
+             ExcerptAppender appender = queue.createAppender()) {
+            append(appender, 2);
+            final int firstCycle = appender.cycle();
+            timeProvider.advanceMillis(1_000);
+            append(appender, 3);
+            final int secondCycle = appender.cycle();
+            timeProvider.advanceMillis(1_000);
+            append(appender, 1);
+
+            final CycleSummaries cycleSummaries = queue.cycleSummaries();
+            assertEquals(2, cycleSummaries.excerptCount(firstCycle));
+
+            assertTrue(queue.cycleFile(firstCycle).delete());
+            queue.refreshDirectoryListing();
+            assertEquals(-1, cycleSummaries.excerptCount(firstCycle));
+            assertEquals(3, cycleSummaries.excerptCount(secondCycle));
+        }
+    }
+
+    @Test
+    public void summaryOfACycleWrittenToIsDroppedForEveryQueue() throws Exception {
+        final File dir = getTmpDir();
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        try (SingleChronicleQueue queue = builder(dir, timeProvider).build();
+             SingleChronicleQueue other = builder(dir, timeProvider).build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = other.createTailer()) {
+            append(appender, 2);
+            final int firstCycle = appender.cycle();
+            timeProvider.advanceMillis(1_000);
+            append(appender, 1);
+            assertEquals(2, queue.cycleSummaries().excerptCount(firstCycle));
+            assertEquals(2, other.cycleSummaries().excerptCount(firstCycle));
+
+            // as when an appender back fills the cycle
+            queue.onWrittenToEarlierCycle(firstCycle);
+            assertEquals(-1, queue.cycleSummaries().excerptCount(firstCycle));
+            // the other queue's directory listing hasn't changed, but it sees the summary has gone
+            assertEquals(-1, other.cycleSummaries().excerptCount(firstCycle));
+            assertEquals(2, tailer.exactExcerptsInCycle(firstCycle));
+        }
+    }
+
+    private static int countSummaryKeys(SingleChronicleQueue queue) {
+        final int[] count = {0};
+        queue.metaStore().forEachKey(count, (acc, key, value) -> {
+            if (key.toString().startsWith(CycleSummaries.PREFIX))
+                acc[0]++;
+        });
+        return count[0];
+    }
+
+    @Test
+    public void notTrackedByDefault() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build()) {
+            assertNull(queue.cycleSummaries());
+        }
+    }
+
+    private static SingleChronicleQueueBuilder builder(File dir, SetTimeProvider timeProvider) {
+        return SingleChronicleQueueBuilder.single(dir)
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .trackCycleSummaries(true);
+    }
+
+    private static long append(ExcerptAppender appender, int count) {
+        for (int i = 0; i < count; i++)
+            appender.writeText("hello " + i);
+        return appender.lastIndexAppended();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.queue.RollCycle;
+import org.junit.Test;
+
+import static net.openhft.chronicle.queue.rollcycles.TestRollCycles.TEST_SECONDLY;
+import static org.junit.Assert.assertEquals;
+
+public class ExcerptCounterTest extends QueueTestCommon {
+
+    @Test
+    public void countsAcrossCompletedCycles() throws Exception {
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            final long first = append(appender, 5) - 4;
+            // leave a gap of two cycles
+            timeProvider.advanceMillis(3_000);
+            append(appender, 3);
+            timeProvider.advanceMillis(1_000);
+            final long lastOfThird = append(appender, 4);
+
+            for (int i = 0; i < 3; i++)
+                assertEquals(5 + 3 + 3, queue.countExcerpts(first, lastOfThird));
+
+            // the third cycle is still being written to, so its count must not be cached
+            append(appender, 2);
+            timeProvider.advanceMillis(1_000);
+            final long fourth = append(appender, 1);
+            assertEquals(5 + 3 + 6, queue.countExcerpts(first, fourth));
+            assertEquals(5 + 3 + 6, queue.countExcerpts(fourth, first));
+            assertEquals(5 + 3 + 6 + 1, queue.entryCount());
+        }
+    }
+
+    @Test
+    public void countOfACycleWrittenToAfterALaterCycleIsNotCached() {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            final InternalAppender internal = (InternalAppender) appender;
+            final RollCycle rollCycle = queue.rollCycle();
+            final int later = queue.cycle();
+            final int earlier = later - 2;
+            // as when back filling, the later cycle is written first
+            internal.writeBytes(rollCycle.toIndex(later, 0), Bytes.from("later"));
+            internal.writeBytes(rollCycle.toIndex(earlier, 0), Bytes.from("earlier 0"));
+            assertEquals(1, queue.countExcerpts(rollCycle.toIndex(earlier, 0), rollCycle.toIndex(later, 0)));
+
+            internal.writeBytes(rollCycle.toIndex(earlier, 1), Bytes.from("earlier 1"));
+            assertEquals(2, queue.countExcerpts(rollCycle.toIndex(earlier, 0), rollCycle.toIndex(later, 0)));
+        }
+    }
+
+    private static long append(ExcerptAppender appender, int count) {
+        for (int i = 0; i < count; i++)
+            appender.writeText("hello " + i);
+        return appender.lastIndexAppended();
+    }
+}
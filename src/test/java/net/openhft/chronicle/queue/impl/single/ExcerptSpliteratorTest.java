@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptDecoder;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static net.openhft.chronicle.queue.rollcycles.TestRollCycles.TEST_SECONDLY;
+import static org.junit.Assert.*;
+
+public class ExcerptSpliteratorTest extends QueueTestCommon {
+
+    private static final int CYCLES = 3;
+    private static final int PER_CYCLE = 200;
+    private static final ExcerptDecoder<String> TEXT = (wire, index) -> wire.read("text").text();
+
+    private final SetTimeProvider timeProvider = new SetTimeProvider();
+
+    @Test
+    public void streamsTheRangeInIndexOrder() throws Exception {
+        try (SingleChronicleQueue queue = createQueue()) {
+            final long[] indexes = append(queue);
+            final int from = PER_CYCLE / 2;
+            final int to = indexes.length - 1;
+            final List<String> texts = queue.stream(indexes[from], indexes[to], TEXT).collect(Collectors.toList());
+            assertEquals(to - from, texts.size());
+            for (int i = from; i < to; i++)
+                assertEquals("excerpt " + i, texts.get(i - from));
+        }
+    }
+
+    @Test
+    public void parallelStreamsKeepTheEncounterOrder() throws Exception {
+        try (SingleChronicleQueue queue = createQueue()) {
+            final long[] indexes = append(queue);
+            final List<Long> streamed = queue.stream(indexes[0], queue.lastIndex() + 1, (wire, index) -> index)
+                    .parallel()
+                    .collect(Collectors.toList());
+            assertEquals(indexes.length, streamed.size());
+            for (int i = 0; i < indexes.length; i++)
+                assertEquals(indexes[i], (long) streamed.get(i));
+        }
+    }
+
+    @Test
+    public void splitsByCycleThenWithinACycle() throws Exception {
+        try (SingleChronicleQueue queue = createQueue()) {
+            final long[] indexes = append(queue);
+            final ExcerptSpliterator<String> suffix = new ExcerptSpliterator<>(queue, TEXT, 16, indexes[0], indexes[indexes.length - 1] + 1);
+            assertEquals(indexes.length, suffix.estimateSize());
+
+            // the middle of three cycles starts the suffix
+            final Spliterator<String> prefix = suffix.trySplit();
+            assertNotNull(prefix);
+            assertEquals(PER_CYCLE, prefix.estimateSize());
+            assertEquals(2 * PER_CYCLE, suffix.estimateSize());
+
+            // a single cycle is split by sequence number
+            final Spliterator<String> firstHalf = prefix.trySplit();
+            assertNotNull(firstHalf);
+            assertEquals(PER_CYCLE / 2, firstHalf.estimateSize());
+            assertEquals(PER_CYCLE / 2, prefix.estimateSize());
+
+            final List<String> texts = new ArrayList<>();
+            firstHalf.forEachRemaining(texts::add);
+            prefix.forEachRemaining(texts::add);
+            suffix.forEachRemaining(texts::add);
+            assertEquals(indexes.length, texts.size());
+            for (int i = 0; i < indexes.length; i++)
+                assertEquals("excerpt " + i, texts.get(i));
+
+            // nothing is split once it has been read
+            assertNull(suffix.trySplit());
+        }
+    }
+
+    @Test
+    public void smallRangesAreNotSplit() throws Exception {
+        try (SingleChronicleQueue queue = createQueue()) {
+            final long[] indexes = append(queue);
+            assertNull(new ExcerptSpliterator<>(queue, TEXT, PER_CYCLE, indexes[0], indexes[PER_CYCLE - 1] + 1).trySplit());
+        }
+    }
+
+    @Test
+    public void cyclesAreNotSplitIntoPartsSmallerThanTheMinimum() throws Exception {
+        try (SingleChronicleQueue queue = createQueue()) {
+            final long[] indexes = append(queue);
+            final long to = indexes[indexes.length - 1] + 1;
+
+            // neither cycle boundary leaves enough either side, so the middle cycle is split
+            final ExcerptSpliterator<String> suffix = new ExcerptSpliterator<>(queue, TEXT, PER_CYCLE + 50, indexes[0], to);
+            final Spliterator<String> prefix = suffix.trySplit();
+            assertNotNull(prefix);
+            assertEquals(CYCLES * PER_CYCLE / 2, prefix.estimateSize());
+            assertEquals(CYCLES * PER_CYCLE / 2, suffix.estimateSize());
+
+            assertNull(new ExcerptSpliterator<>(queue, TEXT, CYCLES * PER_CYCLE / 2 + 1, indexes[0], to).trySplit());
+        }
+    }
+
+    @Test
+    public void closingTheStreamClosesTheTailersOfEveryPart() throws Exception {
+        try (SingleChronicleQueue queue = createQueue()) {
+            final long[] indexes = append(queue);
+            final ExcerptSpliterator<String> suffix = new ExcerptSpliterator<>(queue, TEXT, 16, indexes[0], indexes[indexes.length - 1] + 1);
+            final Spliterator<String> prefix = suffix.trySplit();
+            assertNotNull(prefix);
+            final List<String> texts = new ArrayList<>();
+            assertTrue(prefix.tryAdvance(texts::add));
+            assertTrue(suffix.tryAdvance(texts::add));
+            assertEquals(2, suffix.openTailers());
+
+            // as a stream which ends early does when it is closed
+            try (Stream<String> stream = StreamSupport.stream(suffix, false).onClose(suffix::close)) {
+                assertEquals("excerpt " + (PER_CYCLE + 1), stream.findFirst().orElse(null));
+            }
+            assertEquals(0, suffix.openTailers());
+        }
+    }
+
+    private SingleChronicleQueue createQueue() throws Exception {
+        return SingleChronicleQueueBuilder.binary(getTmpDir())
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .build();
+    }
+
+    private long[] append(SingleChronicleQueue queue) {
+        final long[] indexes = new long[CYCLES * PER_CYCLE];
+        try (ExcerptAppender appender = queue.createAppender()) {
+            for (int i = 0; i < indexes.length; i++) {
+                if (i > 0 && i % PER_CYCLE == 0)
+                    timeProvider.advanceMillis(1_000);
+                try (DocumentContext dc = appender.writingDocument()) {
+                    dc.wire().write("text").text("excerpt " + i);
+                    indexes[i] = dc.index();
+                }
+            }
+        }
+        return indexes;
+    }
+}
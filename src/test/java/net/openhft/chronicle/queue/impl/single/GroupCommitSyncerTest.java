@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.MappedBytes;
+import net.openhft.chronicle.bytes.MappedBytesStore;
+import net.openhft.chronicle.bytes.SyncMode;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class GroupCommitSyncerTest extends QueueTestCommon {
+
+    @Test
+    public void syncReturnsOnceTheAppendedIndexIsDurable() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .syncMode(SyncMode.ASYNC)
+                .groupCommit(true)
+                .build()) {
+            final ExecutorService es = Executors.newFixedThreadPool(4);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    futures.add(es.submit(() -> {
+                        try (ExcerptAppender appender = queue.createAppender()) {
+                            for (int i = 0; i < 100; i++) {
+                                appender.writeText("hello " + i);
+                                appender.sync();
+                                assertTrue(queue.lastIndexMSynced() >= appender.lastIndexAppended());
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures)
+                    future.get(30, TimeUnit.SECONDS);
+            } finally {
+                es.shutdownNow();
+            }
+            assertEquals(queue.lastIndex(), queue.lastIndexMSynced());
+        }
+    }
+
+    @Test
+    public void syncsEveryStoreWhateverTheOrderOfIndices() throws Exception {
+        final File dir = getTmpDir();
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(dir)
+                .testBlockSize()
+                .syncMode(SyncMode.ASYNC)
+                .groupCommit(true)
+                .build();
+             MappedBytes first = MappedBytes.mappedBytes(new File(dir, "first.tmp"), OS.pageSize());
+             MappedBytes second = MappedBytes.mappedBytes(new File(dir, "second.tmp"), OS.pageSize())) {
+            first.writeLong(0, 1);
+            second.writeLong(0, 2);
+            final GroupCommitSyncer syncer = queue.groupCommitSyncer();
+            syncer.sync((MappedBytesStore) first.bytesStore(), Long.BYTES, 10);
+            // a lower index in another store is still synced, rather than taken as covered
+            syncer.sync((MappedBytesStore) second.bytesStore(), Long.BYTES, 5);
+            assertEquals(10, queue.lastIndexMSynced());
+        }
+    }
+
+    @Test
+    public void aFailedSyncOnlyFailsItsOwnRound() throws Exception {
+        final File dir = getTmpDir();
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(dir)
+                .testBlockSize()
+                .build();
+             MappedBytes bytes = MappedBytes.mappedBytes(new File(dir, "bytes.tmp"), OS.pageSize())) {
+            bytes.writeLong(0, 1);
+            final AtomicBoolean failNext = new AtomicBoolean(true);
+            final GroupCommitSyncer syncer = new GroupCommitSyncer(queue) {
+                @Override
+                void syncUpTo(MappedBytesStore store, long position) {
+                    if (failNext.getAndSet(false))
+                        throw new IllegalStateException("msync failed");
+                    super.syncUpTo(store, position);
+                }
+            };
+            try {
+                final MappedBytesStore store = (MappedBytesStore) bytes.bytesStore();
+                try {
+                    syncer.sync(store, Long.BYTES, 10);
+                    fail();
+                } catch (IllegalStateException expected) {
+                    assertEquals("msync failed", expected.getMessage());
+                }
+                assertNotEquals(10, queue.lastIndexMSynced());
+
+                // the next round retries what failed, so the higher index is acknowledged
+                syncer.sync(store, Long.BYTES, 5);
+                assertEquals(10, queue.lastIndexMSynced());
+                syncer.sync(store, Long.BYTES, 11);
+                assertEquals(11, queue.lastIndexMSynced());
+            } finally {
+                syncer.close();
+            }
+        }
+    }
+
+    @Test
+    public void noSyncerWithoutASyncMode() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .syncMode(SyncMode.NONE)
+                .groupCommit(true)
+                .build()) {
+            assertNull(queue.groupCommitSyncer());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.queue.reader.Reader;
+import net.openhft.chronicle.queue.reader.comparator.NumericBinarySearchComparator;
+import net.openhft.chronicle.wire.DocumentContext;
+import net.openhft.chronicle.wire.Wire;
+import net.openhft.chronicle.wire.WireType;
+import org.junit.Test;
+
+import java.util.Comparator;
+
+import static org.junit.Assert.*;
+
+public class InterpolationSearchTest extends QueueTestCommon {
+
+    private static final int EXCERPTS = 10_000;
+
+    @Test
+    public void findsKeysInAFewProbes() throws Exception {
+        final CountingComparator numeric = new CountingComparator();
+        final Comparator<Wire> bisecting = (a, b) -> numeric.compare(a, b);
+        final long[] indices = new long[EXCERPTS];
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            for (int i = 0; i < EXCERPTS; i++) {
+                try (DocumentContext dc = appender.writingDocument()) {
+                    // even keys so odd ones can be searched for
+                    dc.wire().write("ts").int64(1_000_000L + i * 2L);
+                }
+                indices[i] = appender.lastIndexAppended();
+            }
+
+            for (int i = 0; i < EXCERPTS; i += 37) {
+                numeric.keys = 0;
+                assertEquals(indices[i], BinarySearch.search(tailer, key(1_000_000L + i * 2L), numeric));
+                // the key, both ends and a probe or two
+                assertTrue("Read " + numeric.keys + " keys", numeric.keys <= 6);
+                assertEquals(indices[i], BinarySearch.search(tailer, key(1_000_000L + i * 2L), bisecting));
+            }
+
+            assertEquals(-indices[0], BinarySearch.search(tailer, key(0), numeric));
+            assertEquals(-indices[EXCERPTS - 1], BinarySearch.search(tailer, key(Long.MAX_VALUE), numeric));
+        }
+    }
+
+    @Test
+    public void missesAreApproximatedAsBisectionDoes() throws Exception {
+        final CountingComparator numeric = new CountingComparator();
+        final Comparator<Wire> bisecting = (a, b) -> numeric.compare(a, b);
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            for (int i = 0; i < EXCERPTS; i++) {
+                try (DocumentContext dc = appender.writingDocument()) {
+                    dc.wire().write("ts").int64(1_000_000L + i * 2L);
+                }
+            }
+
+            // odd keys fall between excerpts, and the rest are before or after them all
+            final long[] missing = {0, 999_999, 1_000_001, 1_000_021, 1_009_999, 1_012_345, 1_019_997, 1_019_999, Long.MAX_VALUE};
+            for (long ts : missing) {
+                final long expected = BinarySearch.search(tailer, key(ts), bisecting);
+                assertTrue(expected < 0);
+                assertEquals("ts " + ts, expected, BinarySearch.search(tailer, key(ts), numeric));
+            }
+        }
+    }
+
+    @Test
+    public void fallsBackToBisectionOnSkewedKeys() throws Exception {
+        final CountingComparator numeric = new CountingComparator();
+        final long[] keys = new long[EXCERPTS];
+        final long[] indices = new long[EXCERPTS];
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            for (int i = 0; i < EXCERPTS; i++) {
+                // all but the last key are bunched together
+                keys[i] = i == EXCERPTS - 1 ? Long.MAX_VALUE / 2 : i;
+                try (DocumentContext dc = appender.writingDocument()) {
+                    dc.wire().write("ts").int64(keys[i]);
+                }
+                indices[i] = appender.lastIndexAppended();
+            }
+
+            for (int i = 0; i < EXCERPTS; i += 101) {
+                numeric.keys = 0;
+                assertEquals(indices[i], BinarySearch.search(tailer, key(keys[i]), numeric));
+                // no worse than about twice bisection
+                assertTrue("Read " + numeric.keys + " keys", numeric.keys <= 32);
+            }
+        }
+    }
+
+    @Test
+    public void repeatedSearchesReadCachedKeys() throws Exception {
+        final CountingComparator numeric = new CountingComparator();
+        try (BinarySearchKeyCache cache = new BinarySearchKeyCache(1024);
+             SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            long index = 0;
+            for (int i = 0; i < EXCERPTS; i++) {
+                try (DocumentContext dc = appender.writingDocument()) {
+                    dc.wire().write("ts").int64(i * 2L);
+                }
+                if (i == 500)
+                    index = appender.lastIndexAppended();
+            }
+
+            assertEquals(index, BinarySearch.search(tailer, key(1_000), numeric, cache));
+            final long misses = cache.misses();
+            assertTrue(misses > 0);
+
+            // only the key searched for is read again
+            numeric.keys = 0;
+            assertEquals(index, BinarySearch.search(tailer, key(1_000), numeric, cache));
+            assertEquals(1, numeric.keys);
+            assertEquals(misses, cache.misses());
+            assertEquals(misses, cache.hits());
+
+            final long miss = BinarySearch.search(tailer, key(1_001), (a, b) -> numeric.compare(a, b));
+            assertEquals(miss, BinarySearch.search(tailer, key(1_001), numeric, cache));
+
+            // keys evict those in the same slot, so the cache holds no more than its capacity
+            for (int i = 0; i < EXCERPTS; i += 3)
+                assertEquals(BinarySearch.search(tailer, key(i * 2L), (a, b) -> numeric.compare(a, b)),
+                        BinarySearch.search(tailer, key(i * 2L), numeric, cache));
+            assertTrue(cache.size() <= 1024);
+
+            cache.clear();
+            assertEquals(0, cache.size());
+        }
+    }
+
+    private static Wire key(long ts) {
+        final Wire wire = WireType.BINARY.apply(Bytes.allocateElasticOnHeap());
+        wire.write("ts").int64(ts);
+        return wire;
+    }
+
+    static final class CountingComparator implements NumericBinarySearchComparator {
+        int keys;
+
+        @Override
+        public long applyAsLong(Wire wire) {
+            keys++;
+            final long readPosition = wire.bytes().readPosition();
+            try {
+                return wire.read("ts").int64();
+            } finally {
+                wire.bytes().readPosition(readPosition);
+            }
+        }
+
+        @Override
+        public Wire wireKey() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void accept(Reader reader) {
+        }
+    }
+}
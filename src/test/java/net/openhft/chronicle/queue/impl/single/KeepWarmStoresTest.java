@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.BackgroundResourceReleaser;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.queue.impl.StoreFileListener;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.openhft.chronicle.queue.rollcycles.TestRollCycles.TEST_SECONDLY;
+import static org.junit.Assert.*;
+
+public class KeepWarmStoresTest extends QueueTestCommon {
+
+    private final AtomicInteger acquired = new AtomicInteger();
+    private final AtomicInteger released = new AtomicInteger();
+
+    @Test
+    public void storesClosedRecentlyAreReused() throws Exception {
+        try (SingleChronicleQueue queue = builder().keepWarmStores(2).build()) {
+            final long[] indices = appendToTwoCycles(queue);
+
+            try (ExcerptTailer tailer = queue.createTailer()) {
+                for (int i = 0; i < 10; i++) {
+                    assertTrue(tailer.moveToIndex(indices[i % 2]));
+                    assertEquals("cycle " + i % 2, tailer.readText());
+                }
+            }
+            BackgroundResourceReleaser.releasePendingResources();
+            // each cycle is mapped once, and kept until the queue is closed
+            assertEquals(2, acquired.get());
+            assertEquals(0, released.get());
+        }
+        BackgroundResourceReleaser.releasePendingResources();
+        assertEquals(2, released.get());
+    }
+
+    @Test
+    public void storesKeptWarmExpire() throws Exception {
+        try (SingleChronicleQueue queue = builder().keepWarmStores(2).keepWarmMillis(1).build()) {
+            final long[] indices = appendToTwoCycles(queue);
+
+            try (ExcerptTailer tailer = queue.createTailer()) {
+                for (int i = 0; i < 4; i++) {
+                    assertTrue(tailer.moveToIndex(indices[i % 2]));
+                    Jvm.pause(10);
+                }
+            }
+            BackgroundResourceReleaser.releasePendingResources();
+            assertEquals(4, acquired.get());
+        }
+    }
+
+    private SingleChronicleQueueBuilder builder() throws Exception {
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        return SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .storeFileListener(new StoreFileListener() {
+                    @Override
+                    public void onAcquired(int cycle, File file) {
+                        acquired.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onReleased(int cycle, File file) {
+                        released.incrementAndGet();
+                    }
+                });
+    }
+
+    private long[] appendToTwoCycles(SingleChronicleQueue queue) {
+        final SetTimeProvider timeProvider = (SetTimeProvider) queue.time();
+        final long[] indices = new long[2];
+        try (ExcerptAppender appender = queue.createAppender()) {
+            for (int i = 0; i < 2; i++) {
+                timeProvider.advanceMillis(1_000);
+                appender.writeText("cycle " + i);
+                indices[i] = appender.lastIndexAppended();
+            }
+        }
+        BackgroundResourceReleaser.releasePendingResources();
+        acquired.set(0);
+        released.set(0);
+        return indices;
+    }
+}
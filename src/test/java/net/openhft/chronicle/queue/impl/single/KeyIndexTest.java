@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static net.openhft.chronicle.queue.rollcycles.TestRollCycles.TEST_SECONDLY;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+
+public class KeyIndexTest extends QueueTestCommon {
+
+    @Test
+    public void findsTheLatestExcerptForAKey() throws Exception {
+        final File dir = getTmpDir();
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        final long[] indices = new long[900];
+        final File lastTable;
+        try (SingleChronicleQueue queue = builder(dir, timeProvider).build();
+             ExcerptAppender appender = queue.createAppender()) {
+            for (int i = 0; i < indices.length; i++) {
+                if (i % 300 == 0)
+                    timeProvider.advanceMillis(1_000);
+                indices[i] = append(appender, i);
+            }
+            // keys are found whether or not they have been indexed yet
+            assertEquals(indices[0], queue.indexForKey(0));
+            assertEquals(indices[450], queue.indexForKey(450));
+            assertEquals(indices[899], queue.indexForKey(899));
+            assertEquals(-1, queue.indexForKey(-1));
+
+            // a key appended again is found at its latest index
+            final long again = append(appender, 10);
+            assertEquals(again, queue.indexForKey(10));
+
+            lastTable = KeyIndex.fileFor(queue.cycleFile(appender.cycle()));
+            waitForIndexedUpTo(lastTable, 301);
+            assertEquals(indices[750], queue.indexForKey(750));
+        }
+
+        // a table which is lost is rebuilt from its cycle file
+        assertTrue(lastTable.delete());
+        try (SingleChronicleQueue queue = builder(dir, timeProvider).build()) {
+            assertEquals(indices[600], queue.indexForKey(600));
+            waitForIndexedUpTo(lastTable, 301);
+            assertEquals(indices[899], queue.indexForKey(899));
+        }
+    }
+
+    @Test
+    public void tableGrowsInTheFileReadersHaveOpen() throws Exception {
+        final File dir = getTmpDir();
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        try (SingleChronicleQueue queue = builder(dir, timeProvider).build();
+             ExcerptAppender appender = queue.createAppender()) {
+            final long first = append(appender, 0);
+            final File table = KeyIndex.fileFor(queue.cycleFile(appender.cycle()));
+            waitForIndexedUpTo(table, 1);
+            try (RandomAccessFile raf = new RandomAccessFile(table, "r")) {
+                final FileChannel channel = raf.getChannel();
+                final ByteBuffer header = ByteBuffer.allocate(KeyIndex.HEADER_SIZE).order(ByteOrder.nativeOrder());
+                assertTrue(KeyIndex.readHeader(channel, header));
+                final long tableOffset = header.getLong(KeyIndex.TABLE_OFFSET);
+                // maps the table for lookups before it grows
+                assertEquals(first, queue.indexForKey(0));
+
+                // more keys than fit in the initial table
+                final int count = (int) (KeyIndex.INITIAL_CAPACITY * 3 / 4) + 10;
+                long last = first;
+                for (int i = 1; i <= count; i++)
+                    last = append(appender, i);
+                waitForIndexedUpTo(table, count + 1);
+
+                // the file open before the table grew holds the larger table, as does the mapping used for lookups
+                assertTrue(KeyIndex.readHeader(channel, header));
+                assertTrue(header.getLong(KeyIndex.TABLE_OFFSET) > tableOffset);
+                assertEquals(first, queue.indexForKey(0));
+                assertEquals(last, queue.indexForKey(count));
+            }
+        }
+    }
+
+    @Test
+    public void tableGoesWithItsCycleFile() throws Exception {
+        // a mapped file can't be deleted on Windows
+        assumeFalse(OS.isWindows());
+        final File dir = getTmpDir();
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        try (SingleChronicleQueue queue = builder(dir, timeProvider).build();
+             ExcerptAppender appender = queue.createAppender()) {
+            append(appender, 1);
+            final File firstCycleFile = queue.cycleFile(appender.cycle());
+            final File firstTable = KeyIndex.fileFor(firstCycleFile);
+            waitForIndexedUpTo(firstTable, 1);
+            timeProvider.advanceMillis(1_000);
+            append(appender, 2);
+            waitForIndexedUpTo(KeyIndex.fileFor(queue.cycleFile(appender.cycle())), 1);
+
+            assertTrue(firstCycleFile.delete());
+            timeProvider.advanceMillis(1_000);
+            append(appender, 3);
+            // removed in the background
+            final long end = System.currentTimeMillis() + 10_000;
+            while (firstTable.exists()) {
+                assertTrue("Table not removed", System.currentTimeMillis() < end);
+                Jvm.pause(10);
+            }
+        }
+    }
+
+    private static SingleChronicleQueueBuilder builder(File dir, SetTimeProvider timeProvider) {
+        return SingleChronicleQueueBuilder.single(dir)
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .keyExtractor(wire -> wire.read("id").int64());
+    }
+
+    private static long append(ExcerptAppender appender, long id) {
+        try (DocumentContext dc = appender.writingDocument()) {
+            dc.wire().write("id").int64(id)
+                    .write("text").text("order " + id);
+        }
+        return appender.lastIndexAppended();
+    }
+
+    private static void waitForIndexedUpTo(File table, long sequence) throws IOException {
+        final long end = System.currentTimeMillis() + 10_000;
+        while (KeyIndex.indexedUpTo(table) < sequence) {
+            assertTrue("Not indexed up to " + sequence, System.currentTimeMillis() < end);
+            Jvm.pause(10);
+        }
+    }
+}
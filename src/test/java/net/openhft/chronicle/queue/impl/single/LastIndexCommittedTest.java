@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptBatch;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
+public class LastIndexCommittedTest extends QueueTestCommon {
+
+    @Test
+    public void commitsAreVisibleToOtherQueueInstances() throws Exception {
+        final File dir = getTmpDir();
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(dir)
+                .testBlockSize()
+                .trackLastIndexCommitted(true)
+                .build();
+             SingleChronicleQueue other = SingleChronicleQueueBuilder.single(dir)
+                     .testBlockSize()
+                     .trackLastIndexCommitted(true)
+                     .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            assertEquals(-1, other.lastIndexCommitted());
+            assertEquals(-1, other.lastIndex());
+
+            for (int i = 0; i < 10; i++)
+                appender.writeText("hello " + i);
+            final long last = appender.lastIndexAppended();
+            assertEquals(last, other.lastIndexCommitted());
+            assertEquals(last, other.lastIndex());
+
+            try (DocumentContext dc = appender.writingDocument(true)) {
+                dc.wire().write("meta").text("data");
+            }
+            assertEquals(last, other.lastIndexCommitted());
+
+            try (ExcerptBatch batch = appender.writingBatch(4)) {
+                for (int i = 0; i < 4; i++) {
+                    try (DocumentContext dc = batch.writingDocument()) {
+                        dc.wire().write("batch").int32(i);
+                    }
+                }
+            }
+            assertEquals(last + 4, other.lastIndexCommitted());
+            assertEquals(queue.lastIndex(), other.lastIndex());
+        }
+    }
+
+    @Test
+    public void notTrackedByDefault() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            appender.writeText("hello");
+            assertEquals(-1, queue.lastIndexCommitted());
+            assertEquals(appender.lastIndexAppended(), queue.lastIndex());
+        }
+    }
+}
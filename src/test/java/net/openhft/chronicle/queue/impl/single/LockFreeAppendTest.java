@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LockFreeAppendTest extends QueueTestCommon {
+
+    private static final int THREADS = 4;
+    private static final int PER_THREAD = 2_000;
+
+    @Test
+    public void concurrentProducersWriteEveryExcerptWithConsecutiveIndices() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .lockFreeAppend(true)
+                .build()) {
+            final ExecutorService es = Executors.newFixedThreadPool(THREADS);
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    final int thread = t;
+                    futures.add(es.submit(() -> {
+                        try (ExcerptAppender appender = queue.createAppender()) {
+                            final Bytes<?> bytes = Bytes.allocateElasticDirect(8);
+                            try {
+                                for (int i = 0; i < PER_THREAD; i++) {
+                                    bytes.clear().writeInt(thread).writeInt(i);
+                                    appender.writeBytes(bytes);
+                                }
+                            } finally {
+                                bytes.releaseLast();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures)
+                    future.get(30, TimeUnit.SECONDS);
+            } finally {
+                es.shutdownNow();
+            }
+
+            final BitSet[] seen = new BitSet[THREADS];
+            for (int t = 0; t < THREADS; t++)
+                seen[t] = new BitSet(PER_THREAD);
+            final long firstIndex = queue.firstIndex();
+            try (ExcerptTailer tailer = queue.createTailer()) {
+                for (int n = 0; n < THREADS * PER_THREAD; n++) {
+                    try (DocumentContext dc = tailer.readingDocument()) {
+                        assertTrue(dc.isPresent());
+                        assertEquals(firstIndex + n, dc.index());
+                        final int thread = dc.wire().bytes().readInt();
+                        final int i = dc.wire().bytes().readInt();
+                        assertFalse(seen[thread].get(i));
+                        seen[thread].set(i);
+                    }
+                }
+                try (DocumentContext dc = tailer.readingDocument()) {
+                    assertFalse(dc.isPresent());
+                }
+
+                final long middle = firstIndex + THREADS * PER_THREAD / 2;
+                assertTrue(tailer.moveToIndex(middle));
+                try (DocumentContext dc = tailer.readingDocument()) {
+                    assertEquals(middle, dc.index());
+                }
+            }
+            for (int t = 0; t < THREADS; t++)
+                assertEquals(PER_THREAD, seen[t].cardinality());
+            assertEquals(firstIndex + THREADS * PER_THREAD - 1, queue.lastIndex());
+        }
+    }
+
+    @Test
+    public void lockedAndLockFreeAppendsInterleave() throws IOException {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .lockFreeAppend(true)
+                .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            final Bytes<?> bytes = Bytes.from("lock-free");
+            try {
+                for (int i = 0; i < 10; i++) {
+                    appender.writeBytes(bytes);
+                    final long lockFreeIndex = appender.lastIndexAppended();
+                    try (DocumentContext dc = appender.writingDocument()) {
+                        assertEquals(lockFreeIndex + 1, dc.index());
+                        dc.wire().write("locked").int32(i);
+                    }
+                }
+            } finally {
+                bytes.releaseLast();
+            }
+
+            try (ExcerptTailer tailer = queue.createTailer()) {
+                for (int i = 0; i < 10; i++) {
+                    try (DocumentContext dc = tailer.readingDocument()) {
+                        assertEquals("lock-free", dc.wire().bytes().toString());
+                    }
+                    try (DocumentContext dc = tailer.readingDocument()) {
+                        assertEquals(i, dc.wire().read("locked").int32());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -18,21 +18,33 @@
 
 package net.openhft.chronicle.queue.impl.single;
 
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.MappedBytes;
 import net.openhft.chronicle.bytes.PageUtil;
+import net.openhft.chronicle.bytes.SyncMode;
 import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.OS;
 import net.openhft.chronicle.core.io.ClosedIllegalStateException;
 import net.openhft.chronicle.core.io.IOTools;
+import net.openhft.chronicle.core.time.SetTimeProvider;
 import net.openhft.chronicle.queue.ChronicleQueue;
 import net.openhft.chronicle.queue.QueueTestCommon;
 import net.openhft.chronicle.wire.DocumentContext;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import static net.openhft.chronicle.queue.rollcycles.LargeRollCycles.HUGE_DAILY;
-import static org.junit.Assert.assertEquals;
+import static net.openhft.chronicle.queue.rollcycles.TestRollCycles.TEST_SECONDLY;
+import static org.junit.Assert.*;
 import static org.junit.Assume.assumeTrue;
 
 public class MicroToucherTest extends QueueTestCommon {
@@ -54,6 +66,94 @@ public class MicroToucherTest extends QueueTestCommon {
         touchPage(b -> b.blockSize(64 << 20), 66561);
     }
 
+    @Test
+    public void bgMicroTouchMakesTheLastIndexDurable() throws Exception {
+        String path = OS.getTarget() + "/bgMicroTouch-" + System.nanoTime();
+        try (ChronicleQueue q = ChronicleQueue.singleBuilder(path).testBlockSize().build();
+             final StoreAppender appender = (StoreAppender) q.createAppender()) {
+            final List<Long> synced = new CopyOnWriteArrayList<>();
+            q.addMSyncListener(synced::add);
+
+            appender.writeText("hello");
+            final long index = appender.lastIndexAppended();
+            final CompletableFuture<Long> future = q.whenMSynced(index);
+            assertFalse(future.isDone());
+
+            appender.microTouch();
+            appender.bgMicroTouch();
+            assertEquals(index, (long) future.get(1, TimeUnit.SECONDS));
+            assertEquals(index, q.lastIndexMSynced());
+            assertEquals(Collections.singletonList(index), synced);
+            assertTrue(q.whenMSynced(index).isDone());
+        } finally {
+            IOTools.deleteDirWithFiles(path);
+        }
+    }
+
+    @Test
+    public void onlyIndicesWhoseBytesAreAllSyncedAreDurable() {
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        final List<long[]> synced = new ArrayList<>();
+        try (SingleChronicleQueue q = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .syncMode(SyncMode.NONE)
+                .build();
+             final StoreAppender appender = (StoreAppender) q.createAppender()) {
+            final MicroToucher toucher = new MicroToucher(appender) {
+                @Override
+                protected void msync(BytesStore store, long start, long length) {
+                    synced.add(new long[]{start, start + length});
+                    super.msync(store, start, length);
+                }
+            };
+            try {
+                final Bytes<?> payload = Bytes.wrapForRead(new byte[1000]);
+                appender.writeBytes(payload);
+                final long chunkSize = ((MappedBytes) appender.wire().bytes()).mappedFile().chunkSize();
+                // across a chunk boundary
+                while (appender.wire().bytes().writePosition() < chunkSize + 1000) {
+                    appender.writeBytes(payload);
+                    toucher.execute();
+                }
+                final long endOfFirst = appender.wire().bytes().writePosition();
+                Jvm.pause(2);
+                toucher.bgExecute();
+                assertEquals(appender.lastIndexAppended(), q.lastIndexMSynced());
+                assertCovered(synced, 0, endOfFirst);
+
+                // and a roll, which leaves the end of file marker to sync in the first cycle
+                synced.clear();
+                timeProvider.advanceMillis(1_000);
+                appender.writeBytes(payload);
+                toucher.execute();
+                final long endOfSecond = appender.wire().bytes().writePosition();
+                Jvm.pause(2);
+                toucher.bgExecute();
+                assertEquals(appender.lastIndexAppended(), q.lastIndexMSynced());
+                int restart = 1;
+                while (restart < synced.size() && synced.get(restart)[0] != 0)
+                    restart++;
+                assertCovered(synced.subList(0, restart), endOfFirst & ~0xFFF, endOfFirst + Integer.BYTES);
+                assertCovered(synced.subList(restart, synced.size()), 0, endOfSecond);
+            } finally {
+                toucher.close();
+            }
+        }
+    }
+
+    private static void assertCovered(List<long[]> ranges, long from, long to) {
+        assertFalse(ranges.isEmpty());
+        long end = ranges.get(0)[0];
+        assertTrue(end <= from);
+        for (long[] range : ranges) {
+            assertTrue("gap before " + range[0], range[0] <= end);
+            end = Math.max(end, range[1]);
+        }
+        assertTrue("synced up to " + end + " rather than " + to, end >= to);
+    }
+
     public void touchPage(Consumer<SingleChronicleQueueBuilder> configure, int pagesExpected) {
         long start = System.nanoTime();
         String path = OS.getTarget() + "/touchPage-" + System.nanoTime();
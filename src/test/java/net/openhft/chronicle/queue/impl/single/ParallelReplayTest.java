@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.openhft.chronicle.queue.rollcycles.TestRollCycles.TEST_SECONDLY;
+import static org.junit.Assert.*;
+
+public class ParallelReplayTest extends QueueTestCommon {
+
+    private static final int CYCLES = 3;
+    private static final int PER_CYCLE = 250;
+
+    private final SetTimeProvider timeProvider = new SetTimeProvider();
+
+    @Test
+    public void orderedReplayIsInIndexOrder() throws Exception {
+        try (SingleChronicleQueue queue = createQueue()) {
+            final long[] indexes = append(queue);
+            final List<String> texts = new ArrayList<>();
+            final List<Long> replayed = new ArrayList<>();
+            final long count = new ParallelReplay<String>(queue, 32, (wire, index) -> wire.read("text").text(), (text, index) -> {
+                texts.add(text);
+                replayed.add(index);
+            }).replay(indexes[0], indexes[indexes.length - 1] + 1, 4, true);
+
+            assertEquals(indexes.length, count);
+            for (int i = 0; i < indexes.length; i++) {
+                assertEquals(indexes[i], (long) replayed.get(i));
+                assertEquals("excerpt " + i, texts.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void unorderedReplayVisitsEveryExcerptInTheRange() throws Exception {
+        try (SingleChronicleQueue queue = createQueue()) {
+            final long[] indexes = append(queue);
+            // from part way through the first cycle to part way through the last
+            final int from = PER_CYCLE / 2;
+            final int to = indexes.length - PER_CYCLE / 3;
+            final ConcurrentHashMap<Long, String> replayed = new ConcurrentHashMap<>();
+            final long count = queue.<String>replay(indexes[from], indexes[to], 4, false,
+                    (wire, index) -> wire.read("text").text(),
+                    (text, index) -> assertNull(replayed.put(index, text)));
+
+            assertEquals(to - from, count);
+            assertEquals(to - from, replayed.size());
+            for (int i = from; i < to; i++)
+                assertEquals("excerpt " + i, replayed.get(indexes[i]));
+        }
+    }
+
+    @Test
+    public void anEmptyRangeReplaysNothing() throws Exception {
+        try (SingleChronicleQueue queue = createQueue()) {
+            final long[] indexes = append(queue);
+            assertEquals(0, queue.replay(indexes[1], indexes[1], 2, true,
+                    (wire, index) -> index,
+                    (value, index) -> fail()));
+        }
+    }
+
+    private SingleChronicleQueue createQueue() throws Exception {
+        return SingleChronicleQueueBuilder.binary(getTmpDir())
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .build();
+    }
+
+    private long[] append(SingleChronicleQueue queue) {
+        final long[] indexes = new long[CYCLES * PER_CYCLE];
+        try (ExcerptAppender appender = queue.createAppender()) {
+            for (int i = 0; i < indexes.length; i++) {
+                if (i > 0 && i % PER_CYCLE == 0)
+                    timeProvider.advanceMillis(1_000);
+                try (DocumentContext dc = appender.writingDocument()) {
+                    dc.wire().write("text").text("excerpt " + i);
+                    indexes[i] = dc.index();
+                }
+            }
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class PreallocatedIndexesTest extends QueueTestCommon {
+
+    // spans five secondary indexes of 8 entries
+    private static final int EXCERPTS = 40;
+    // more than any padding between excerpts, less than a header and a secondary index
+    private static final int INDEX_SIZE = 8 * 8 + 8;
+
+    @Test
+    public void noIndexIsWrittenBetweenExcerpts() throws IOException {
+        assertTrue(largestGap(true) < INDEX_SIZE);
+    }
+
+    @Test
+    public void indexesAreWrittenBetweenExcerptsByDefault() throws IOException {
+        assertTrue(largestGap(false) > INDEX_SIZE);
+    }
+
+    @Test
+    public void everyIndexCanBeFound() throws IOException {
+        try (SingleChronicleQueue queue = build(true);
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            final long[] indexes = new long[EXCERPTS];
+            for (int i = 0; i < EXCERPTS; i++) {
+                appender.writeText("hello " + i);
+                indexes[i] = appender.lastIndexAppended();
+            }
+            for (int i = EXCERPTS - 1; i >= 0; i--) {
+                assertTrue(tailer.moveToIndex(indexes[i]));
+                assertEquals("hello " + i, tailer.readText());
+            }
+            assertFalse(tailer.moveToIndex(indexes[EXCERPTS - 1] + 1));
+            assertEquals(EXCERPTS, queue.entryCount());
+        }
+    }
+
+    @Test
+    public void onlyIndexesWithEntriesAreUsed() throws IOException {
+        try (SingleChronicleQueue queue = build(true);
+             ExcerptAppender appender = queue.createAppender()) {
+            // fills the first secondary index and starts the second
+            for (int i = 0; i < 9; i++)
+                appender.writeText("hello " + i);
+            final StoreAppender storeAppender = (StoreAppender) appender;
+            assertEquals(2, storeAppender.store.indexing.usedSecondaryIndexes(storeAppender));
+            assertEquals(9, queue.entryCount());
+        }
+    }
+
+    private long largestGap(boolean preallocateIndexes) throws IOException {
+        try (SingleChronicleQueue queue = build(preallocateIndexes);
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            for (int i = 0; i < EXCERPTS; i++)
+                appender.writeText("hello " + i);
+
+            long largestGap = 0;
+            long lastEnd = -1;
+            for (int i = 0; i < EXCERPTS; i++) {
+                try (DocumentContext dc = tailer.readingDocument()) {
+                    assertTrue(dc.isPresent());
+                    final long start = dc.wire().bytes().readPosition();
+                    if (lastEnd >= 0)
+                        largestGap = Math.max(largestGap, start - lastEnd);
+                    lastEnd = dc.wire().bytes().readLimit();
+                }
+            }
+            return largestGap;
+        }
+    }
+
+    private SingleChronicleQueue build(boolean preallocateIndexes) throws IOException {
+        return SingleChronicleQueueBuilder.binary(getTmpDir())
+                .testBlockSize()
+                .indexCount(8)
+                .indexSpacing(1)
+                .preallocateIndexes(preallocateIndexes)
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.io.AbstractReferenceCounted;
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.core.io.ReferenceCounted;
+import net.openhft.chronicle.core.io.ReferenceOwner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acquires and releases stores from many threads, as tailers do when they all roll to the same cycle, or move between a
+ * few.
+ */
+@Fork(value = 1, warmups = 1)
+@State(Scope.Benchmark)
+@Threads(8)
+public class ReferenceCountedCacheJmhBenchmark {
+
+    @Param({"1", "4"})
+    public int keys;
+
+    private ReferenceCountedCache<Integer, Resource, Reservation, RuntimeException> cache;
+    // keeps each value in use, as the stores of the current cycles are
+    private Reservation[] held;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cache = new ReferenceCountedCache<>(Reservation::new, key -> new Resource());
+        held = new Reservation[keys];
+        for (int i = 0; i < keys; i++)
+            held[i] = cache.get(i);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void acquireRelease() {
+        final int key = keys == 1 ? 0 : ThreadLocalRandom.current().nextInt(keys);
+        cache.get(key).release();
+    }
+
+    @TearDown(Level.Trial)
+    public void complete() {
+        for (Reservation reservation : held)
+            reservation.release();
+        Closeable.closeQuietly(cache);
+    }
+
+    static final class Reservation {
+        private final ReferenceCounted referenceCounted;
+        private final ReferenceOwner referenceOwner = ReferenceOwner.temporary("reservation");
+
+        Reservation(ReferenceCounted referenceCounted) {
+            this.referenceCounted = referenceCounted;
+            referenceCounted.reserve(referenceOwner);
+        }
+
+        void release() {
+            referenceCounted.release(referenceOwner);
+        }
+    }
+
+    static final class Resource extends AbstractReferenceCounted implements Closeable {
+        @Override
+        protected void performRelease() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isClosed() {
+            return refCount() <= 0;
+        }
+    }
+}
@@ -89,6 +89,94 @@ class ReferenceCountedCacheTest extends QueueTestCommon {
         otherReservation.release();
     }
 
+    @Test
+    void shouldKeepValuesOfOtherKeysWhenOneIsReleased() {
+        final Reservation one = cache.get(1);
+        final Reservation two = cache.get(2);
+        one.release();
+        waitForReleased(1);
+        final Reservation otherTwo = cache.get(2);
+        Assertions.assertSame(two.referenceCounted, otherTwo.referenceCounted);
+        final Reservation otherOne = cache.get(1);
+        Assertions.assertNotSame(one.referenceCounted, otherOne.referenceCounted);
+        two.release();
+        otherTwo.release();
+        otherOne.release();
+    }
+
+    @Test
+    void shouldNeverGiveOutAValueReleasedWhileItIsFoundWithoutLocking() throws Exception {
+        final ExecutorService executorService = Executors.newCachedThreadPool();
+        final int numThreads = Math.min(MAX_THREADS_TO_RUN, Math.max(MIN_THREADS_TO_RUN, Runtime.getRuntime().availableProcessors()));
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            // one key, so gets which find the value race the clean up after its last reservation is released
+            futures.add(executorService.submit(() -> {
+                int gets = 0;
+                while (running.get()) {
+                    final Reservation reservation = cache.get(0);
+                    final TestReferenceCounted value = (TestReferenceCounted) reservation.referenceCounted;
+                    Assertions.assertFalse(value.released, "A released value was handed out");
+                    reservation.assertNotReleased();
+                    reservation.release();
+                    gets++;
+                }
+                return gets;
+            }));
+        }
+        Jvm.pause(2_000);
+        running.set(false);
+        try {
+            for (Future<Integer> future : futures)
+                Assertions.assertTrue(future.get(10, TimeUnit.SECONDS) > 0);
+        } finally {
+            executorService.shutdownNow();
+        }
+        Jvm.startup().on(ReferenceCountedCache.class, "Created " + createdCount.get() + ", released " + releasedCount.get());
+    }
+
+    @Test
+    void shouldNeverHoldTwoLiveValuesForOneKey() throws Exception {
+        Closeable.closeQuietly(cache);
+        // a value is only created for a key once the last one has been released
+        cache = new ReferenceCountedCache<>(Reservation::new, id -> {
+            Assertions.assertEquals(createdCount.get(), releasedCount.get(), "Created while another value was live");
+            return new TestReferenceCounted();
+        });
+        final ExecutorService executorService = Executors.newCachedThreadPool();
+        final int numThreads = Math.min(MAX_THREADS_TO_RUN, Math.max(MIN_THREADS_TO_RUN, Runtime.getRuntime().availableProcessors()));
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            futures.add(executorService.submit(() -> {
+                int gets = 0;
+                while (running.get()) {
+                    final Reservation reservation = cache.get(0);
+                    reservation.release();
+                    gets++;
+                }
+                return gets;
+            }));
+        }
+        Jvm.pause(2_000);
+        running.set(false);
+        try {
+            for (Future<Integer> future : futures)
+                Assertions.assertTrue(future.get(10, TimeUnit.SECONDS) > 0);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void waitForReleased(final int count) {
+        final long end = System.currentTimeMillis() + 10_000;
+        while (releasedCount.get() < count) {
+            Assertions.assertTrue(System.currentTimeMillis() < end, "Released " + releasedCount.get() + " of " + count);
+            Jvm.pause(1);
+        }
+    }
+
     private static class ReferenceGetter implements Runnable, ReferenceOwner {
 
         private final int numResources;
@@ -150,6 +238,7 @@ class ReferenceCountedCacheTest extends QueueTestCommon {
     }
 
     private class TestReferenceCounted extends AbstractReferenceCounted implements ReferenceOwner, Closeable {
+        private volatile boolean released;
 
         public TestReferenceCounted() {
             createdCount.incrementAndGet();
@@ -157,6 +246,7 @@ class ReferenceCountedCacheTest extends QueueTestCommon {
 
         @Override
         protected void performRelease() throws IllegalStateException {
+            released = true;
             releasedCount.incrementAndGet();
         }
 
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.io.ClosedIllegalStateException;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StagingAppenderTest extends QueueTestCommon {
+
+    private static final int PRODUCERS = 3;
+    private static final int PER_PRODUCER = 1_000;
+
+    @Test
+    public void stagedExcerptsAreAppendedInProducerOrder() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .bufferCapacity(4 << 10)
+                .build()) {
+            final ConcurrentHashMap<Long, Boolean> indices = new ConcurrentHashMap<>();
+            final CountDownLatch appended = new CountDownLatch(PRODUCERS * PER_PRODUCER);
+            final Thread[] producers = new Thread[PRODUCERS];
+            for (int p = 0; p < PRODUCERS; p++) {
+                final int producer = p;
+                producers[p] = new Thread(() -> {
+                    try (ExcerptAppender appender = queue.createStagingAppender((wire, index) -> {
+                        assertEquals(producer, wire.read("producer").int32());
+                        assertNull(indices.put(index, Boolean.TRUE));
+                        appended.countDown();
+                    })) {
+                        for (int i = 0; i < PER_PRODUCER; i++) {
+                            try (DocumentContext dc = appender.writingDocument()) {
+                                dc.wire().write("producer").int32(producer)
+                                        .write("seq").int32(i);
+                            }
+                        }
+                    }
+                });
+                producers[p].start();
+            }
+            for (Thread producer : producers)
+                producer.join();
+            assertTrue(appended.await(10, TimeUnit.SECONDS));
+            assertEquals(PRODUCERS * PER_PRODUCER, indices.size());
+
+            final int[] next = new int[PRODUCERS];
+            try (ExcerptTailer tailer = queue.createTailer()) {
+                for (int n = 0; n < PRODUCERS * PER_PRODUCER; n++) {
+                    try (DocumentContext dc = tailer.readingDocument()) {
+                        assertTrue(dc.isPresent());
+                        assertTrue(indices.containsKey(dc.index()));
+                        final int producer = dc.wire().read("producer").int32();
+                        assertEquals(next[producer]++, dc.wire().read("seq").int32());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void largestExcerptFitsAnEmptyRingWhereverItWraps() {
+        final StagingRing ring = new StagingRing(1 << 10);
+        try {
+            final Bytes<?> bytes = Bytes.allocateElasticDirect(ring.maxLength());
+            try {
+                for (int i = 0; i < ring.maxLength(); i++)
+                    bytes.writeByte((byte) i);
+                final long[] lengths = new long[1];
+                // each small excerpt moves the write position on, so the large excerpts have to wrap at different places
+                for (int small = 1; small < 200; small += 7) {
+                    assertTrue(ring.tryWrite(bytes, 0, small));
+                    assertEquals(1, ring.drain(10, (store, offset, length) -> lengths[0] = length));
+                    assertEquals(small, lengths[0]);
+
+                    assertTrue("position " + small, ring.tryWrite(bytes, 0, ring.maxLength()));
+                    assertEquals(1, ring.drain(10, (store, offset, length) -> {
+                        lengths[0] = length;
+                        for (int i = 0; i < length; i++)
+                            assertEquals((byte) i, store.readByte(offset + i));
+                    }));
+                    assertEquals(ring.maxLength(), lengths[0]);
+                    assertTrue(ring.isEmpty());
+                }
+            } finally {
+                bytes.releaseLast();
+            }
+        } finally {
+            ring.close();
+        }
+    }
+
+    @Test
+    public void stagedExcerptsAreAppendedWhenTheQueueCloses() throws Exception {
+        final File dir = getTmpDir();
+        final ExcerptAppender appender;
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(dir)
+                .testBlockSize()
+                .bufferCapacity(1 << 20)
+                .build()) {
+            appender = queue.createStagingAppender(null);
+            for (int i = 0; i < PER_PRODUCER; i++) {
+                try (DocumentContext dc = appender.writingDocument()) {
+                    dc.wire().write("seq").int32(i);
+                }
+            }
+        }
+        // the ring has been freed, so staging fails rather than writing to it
+        try {
+            appender.writeBytes(Bytes.from("too late"));
+            fail();
+        } catch (ClosedIllegalStateException expected) {
+            // expected
+        } finally {
+            appender.close();
+        }
+
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(dir)
+                .testBlockSize()
+                .build();
+             ExcerptTailer tailer = queue.createTailer()) {
+            for (int i = 0; i < PER_PRODUCER; i++) {
+                try (DocumentContext dc = tailer.readingDocument()) {
+                    assertTrue(dc.isPresent());
+                    assertEquals(i, dc.wire().read("seq").int32());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptBatch;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StoreAppenderBatchTest extends QueueTestCommon {
+
+    @Test
+    public void batchIsReadableWithConsecutiveIndices() throws IOException {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            appender.writeText("before");
+            final long firstIndex = appender.lastIndexAppended();
+
+            try (ExcerptBatch batch = appender.writingBatch(10)) {
+                for (int i = 0; i < 10; i++) {
+                    try (DocumentContext dc = batch.writingDocument()) {
+                        assertEquals(firstIndex + 1 + i, dc.index());
+                        dc.wire().write("msg").int32(i);
+                    }
+                }
+                assertEquals(0, batch.remaining());
+                assertThrows(IllegalStateException.class, batch::writingDocument);
+            }
+            assertEquals(firstIndex + 10, appender.lastIndexAppended());
+
+            appender.writeText("after");
+            assertEquals(firstIndex + 11, appender.lastIndexAppended());
+
+            try (ExcerptTailer tailer = queue.createTailer()) {
+                assertEquals("before", tailer.readText());
+                for (int i = 0; i < 10; i++) {
+                    try (DocumentContext dc = tailer.readingDocument()) {
+                        assertTrue(dc.isPresent());
+                        assertEquals(firstIndex + 1 + i, dc.index());
+                        assertEquals(i, dc.wire().read("msg").int32());
+                    }
+                }
+                assertEquals("after", tailer.readText());
+
+                assertTrue(tailer.moveToIndex(firstIndex + 5));
+                try (DocumentContext dc = tailer.readingDocument()) {
+                    assertEquals(4, dc.wire().read("msg").int32());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rolledBackExcerptIsNotPublished() throws IOException {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            try (ExcerptBatch batch = appender.writingBatch(3)) {
+                try (DocumentContext dc = batch.writingDocument()) {
+                    dc.wire().getValueOut().text("one");
+                }
+                try (DocumentContext dc = batch.writingDocument()) {
+                    dc.wire().getValueOut().text("rolled back");
+                    dc.rollbackOnClose();
+                }
+                try (DocumentContext dc = batch.writingDocument()) {
+                    dc.wire().getValueOut().text("two");
+                }
+            }
+
+            try (ExcerptTailer tailer = queue.createTailer()) {
+                assertEquals("one", tailer.readText());
+                assertEquals("two", tailer.readText());
+                assertNull(tailer.readText());
+            }
+            assertEquals(appender.lastIndexAppended(), queue.lastIndex());
+        }
+    }
+
+    @Test
+    public void writingDocumentOnTheAppenderJoinsTheBatch() throws IOException {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            try (ExcerptBatch batch = appender.writingBatch(2)) {
+                appender.writeText("one");
+                appender.writeText("two");
+                assertEquals(2, batch.count());
+                assertThrows(IllegalStateException.class, () -> appender.writeText("three"));
+            }
+            assertThrows(IllegalArgumentException.class, () -> appender.writingBatch(0));
+
+            try (ExcerptTailer tailer = queue.createTailer()) {
+                assertEquals("one", tailer.readText());
+                assertEquals("two", tailer.readText());
+                assertNull(tailer.readText());
+            }
+        }
+    }
+
+    @Test
+    public void writeBytesInsideABatchFailsRatherThanDeadlocking() throws IOException {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender()) {
+            try (ExcerptBatch batch = appender.writingBatch(2)) {
+                appender.writeText("one");
+                assertThrows(IllegalStateException.class, () -> appender.writeBytes(Bytes.from("two")));
+                assertThrows(IllegalStateException.class, () -> ((StoreAppender) appender).writeBytes(batch.count(), Bytes.from("two")));
+            }
+            final long one = appender.lastIndexAppended();
+            // the lock was released by the batch
+            appender.writeBytes(Bytes.from("three"));
+            assertEquals(one + 1, appender.lastIndexAppended());
+        }
+    }
+}
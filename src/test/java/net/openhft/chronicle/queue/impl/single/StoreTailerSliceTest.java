@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.PointerBytesStore;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.BatchHandler;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.openhft.chronicle.queue.rollcycles.TestRollCycles.TEST_SECONDLY;
+import static org.junit.Assert.*;
+
+public class StoreTailerSliceTest extends QueueTestCommon {
+
+    @Test
+    public void readBytesSliceSkipsMetaDataAndAdvances() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            final List<Long> indices = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                appender.writeBytes(Bytes.from("msg-" + i));
+                indices.add(appender.lastIndexAppended());
+                try (DocumentContext dc = appender.writingDocument(true)) {
+                    dc.wire().write("meta").int32(i);
+                }
+            }
+
+            final PointerBytesStore slice = BytesStore.nativePointer();
+            try {
+                for (int i = 0; i < 10; i++) {
+                    assertTrue(tailer.readBytesSlice(slice));
+                    assertEquals("msg-" + i, slice.to8bitString());
+                    assertEquals((long) indices.get(i), tailer.lastReadIndex());
+                    // interleaving with readingDocument() keeps the tailer consistent
+                    if (i == 4) {
+                        try (DocumentContext dc = tailer.readingDocument()) {
+                            assertTrue(dc.isPresent());
+                            assertEquals((long) indices.get(++i), dc.index());
+                        }
+                    }
+                }
+                assertFalse(tailer.readBytesSlice(slice));
+
+                appender.writeBytes(Bytes.from("late"));
+                assertTrue(tailer.readBytesSlice(slice));
+                assertEquals("late", slice.to8bitString());
+            } finally {
+                slice.releaseLast();
+            }
+        }
+    }
+
+    @Test
+    public void forEachExcerptCrossesCycles() throws Exception {
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            final List<Long> indices = new ArrayList<>();
+            for (int c = 0; c < 3; c++) {
+                for (int i = 0; i < 5; i++) {
+                    appender.writeBytes(Bytes.from("msg-" + c + "-" + i));
+                    indices.add(appender.lastIndexAppended());
+                }
+                timeProvider.advanceMillis(1_000);
+            }
+
+            final List<Long> read = new ArrayList<>();
+            final List<String> texts = new ArrayList<>();
+            assertEquals(7, tailer.forEachExcerpt(7, (bytes, index) -> {
+                read.add(index);
+                texts.add(bytes.to8bitString());
+            }));
+            assertEquals(8, tailer.forEachExcerpt(100, (bytes, index) -> {
+                read.add(index);
+                texts.add(bytes.to8bitString());
+            }));
+            assertEquals(indices, read);
+            assertEquals("msg-0-0", texts.get(0));
+            assertEquals("msg-2-4", texts.get(14));
+            assertEquals(0, tailer.forEachExcerpt(100, (bytes, index) -> fail()));
+        }
+    }
+
+    @Test
+    public void readBatchStopsAtTheEndOfACycle() throws Exception {
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            final List<Long> indices = new ArrayList<>();
+            for (int c = 0; c < 2; c++) {
+                for (int i = 0; i < 5; i++) {
+                    try (DocumentContext dc = appender.writingDocument()) {
+                        dc.wire().write("n").int32(c * 5 + i);
+                    }
+                    indices.add(appender.lastIndexAppended());
+                }
+                timeProvider.advanceMillis(1_000);
+            }
+
+            final List<Long> read = new ArrayList<>();
+            final BatchHandler handler = (wire, index) -> {
+                assertEquals(read.size(), wire.read("n").int32());
+                read.add(index);
+                return read.size() != 3;
+            };
+            assertEquals(3, tailer.readBatch(10, handler));
+            assertEquals(2, tailer.readBatch(10, handler));
+            assertEquals(4, tailer.readBatch(4, handler));
+            assertEquals(1, tailer.readBatch(10, handler));
+            assertEquals(0, tailer.readBatch(10, handler));
+            assertEquals(indices, read);
+        }
+    }
+}
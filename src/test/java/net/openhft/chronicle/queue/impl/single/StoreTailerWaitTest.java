@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StoreTailerWaitTest extends QueueTestCommon {
+
+    @Test
+    public void timesOutWhenNothingIsAppended() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptTailer tailer = queue.createTailer()) {
+            final long start = System.nanoTime();
+            try (DocumentContext dc = tailer.readingDocument(20, TimeUnit.MILLISECONDS)) {
+                assertFalse(dc.isPresent());
+            }
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        }
+    }
+
+    @Test
+    public void wokenByAnAppendInTheSameProcess() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            appender.writeText("first");
+            assertEquals("first", tailer.readText());
+
+            final Thread writer = new Thread(() -> {
+                Jvm.pause(50);
+                try (ExcerptAppender appender2 = queue.createAppender()) {
+                    appender2.writeText("second");
+                }
+            });
+            writer.start();
+            try (DocumentContext dc = tailer.readingDocument(10, TimeUnit.SECONDS)) {
+                assertTrue(dc.isPresent());
+                assertEquals("second", dc.wire().getValueIn().text());
+            }
+            writer.join();
+
+            try (DocumentContext dc = tailer.readingDocument(1, TimeUnit.MILLISECONDS)) {
+                assertFalse(dc.isPresent());
+            }
+        }
+    }
+}
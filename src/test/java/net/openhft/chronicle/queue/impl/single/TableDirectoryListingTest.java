@@ -117,4 +117,29 @@ public class TableDirectoryListingTest extends QueueTestCommon {
         assertEquals(9, listing.getMaxCreatedCycle());
         assertEquals(9, listingReadOnly.getMaxCreatedCycle());
     }
+
+    @Test
+    public void shouldTrackLastIndexOnlyWhenEnabled() {
+        listing.onAppend(5);
+        assertEquals(-1, listing.lastIndex());
+        assertEquals(-1, listingReadOnly.lastIndex());
+
+        final DirectoryListing tracking = new TableDirectoryListing(tablestore,
+                testDirectory.toPath(),
+                f -> Integer.parseInt(f.split("\\.")[0]),
+                true);
+        final DirectoryListing trackingReadOnly = new TableDirectoryListingReadOnly(tablestore);
+        try {
+            tracking.init();
+            assertEquals(-1, tracking.lastIndex());
+            tracking.onAppend(5);
+            tracking.onAppend(3);
+            assertEquals(5, tracking.lastIndex());
+
+            trackingReadOnly.init();
+            assertEquals(5, trackingReadOnly.lastIndex());
+        } finally {
+            Closeable.closeQuietly(tracking, trackingReadOnly);
+        }
+    }
 }
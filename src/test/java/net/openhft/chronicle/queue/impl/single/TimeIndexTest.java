@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016-2022 chronicle.software
+ *
+ *       https://chronicle.software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.QueueTestCommon;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static net.openhft.chronicle.queue.rollcycles.TestRollCycles.TEST_SECONDLY;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
+
+public class TimeIndexTest extends QueueTestCommon {
+
+    @Test
+    public void moveToTimeFindsTheLastIndexedExcerptBefore() throws Exception {
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        timeProvider.advanceMillis(1_000);
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .indexSpacing(4)
+                .timeProvider(timeProvider)
+                .timeIndex(true)
+                .build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            final long[] times = new long[300];
+            final long[] indices = new long[times.length];
+            for (int i = 0; i < times.length; i++) {
+                // about 100 excerpts per cycle
+                timeProvider.advanceMillis(10);
+                times[i] = timeProvider.currentTimeNanos();
+                appender.writeText("msg " + i);
+                indices[i] = appender.lastIndexAppended();
+            }
+            for (int i : new int[]{1, 50, 150, 199, 299}) {
+                // the time of every 4th excerpt in a cycle is indexed
+                int expected = i - 1;
+                while (queue.rollCycle().toSequenceNumber(indices[expected]) % 4 != 0)
+                    expected--;
+                assertTrue(tailer.moveToTime(times[i]));
+                assertEquals("msg " + expected, tailer.readText());
+                assertEquals(indices[expected], tailer.lastReadIndex());
+            }
+
+            // nothing was written before the first excerpt
+            assertFalse(tailer.moveToTime(times[0]));
+            assertEquals("msg 0", tailer.readText());
+
+            // after everything, the last excerpt indexed is the start of a replay
+            assertTrue(tailer.moveToTime(times[times.length - 1] + TimeUnit.SECONDS.toNanos(10)));
+            assertNotNull(tailer.readText());
+        }
+    }
+
+    @Test
+    public void timeIndexGoesWithItsCycleFile() throws Exception {
+        // a mapped file can't be deleted on Windows
+        assumeFalse(OS.isWindows());
+        final File dir = getTmpDir();
+        final SetTimeProvider timeProvider = new SetTimeProvider();
+        timeProvider.advanceMillis(1_000);
+        final long firstTime = timeProvider.currentTimeNanos();
+        final File firstCycleFile;
+        try (SingleChronicleQueue queue = builder(dir, timeProvider).build();
+             ExcerptAppender appender = queue.createAppender()) {
+            appender.writeText("first");
+            firstCycleFile = queue.cycleFile(appender.cycle());
+        }
+        assertTrue(TimeIndex.fileFor(firstCycleFile).exists());
+
+        // the cycle file is deleted and written again
+        assertTrue(firstCycleFile.delete());
+        timeProvider.advanceMillis(500);
+        try (SingleChronicleQueue queue = builder(dir, timeProvider).build();
+             ExcerptAppender appender = queue.createAppender();
+             ExcerptTailer tailer = queue.createTailer()) {
+            appender.writeText("again");
+            assertEquals(firstCycleFile, queue.cycleFile(appender.cycle()));
+            // the old time of its first excerpt has gone
+            assertFalse(tailer.moveToTime(firstTime + 1));
+
+            // a time index without its cycle file is removed in the background as the queue rolls
+            timeProvider.advanceMillis(1_000);
+            appender.writeText("second");
+            assertTrue(firstCycleFile.delete());
+            timeProvider.advanceMillis(1_000);
+            appender.writeText("third");
+            final long end = System.currentTimeMillis() + 10_000;
+            while (TimeIndex.fileFor(firstCycleFile).exists()) {
+                assertTrue("Time index not removed", System.currentTimeMillis() < end);
+                Jvm.pause(10);
+            }
+            assertTrue(TimeIndex.fileFor(queue.cycleFile(appender.cycle())).exists());
+        }
+    }
+
+    private static SingleChronicleQueueBuilder builder(File dir, SetTimeProvider timeProvider) {
+        return SingleChronicleQueueBuilder.single(dir)
+                .testBlockSize()
+                .rollCycle(TEST_SECONDLY)
+                .timeProvider(timeProvider)
+                .timeIndex(true);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void notKeptByDefault() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.single(getTmpDir())
+                .testBlockSize()
+                .build();
+             ExcerptTailer tailer = queue.createTailer()) {
+            tailer.moveToTime(System.currentTimeMillis() * 1_000_000L);
+        }
+    }
+}